@@ -0,0 +1,95 @@
+package br.com.contact.api.config;
+
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyResponse;
+import br.com.contact.api.service.CompanyJsonService.CompanyJson;
+import br.com.contact.api.service.Versioned;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String USERS = "users";
+
+    public static final String COMPANIES = "companies";
+
+    public static final String COMPANIES_JSON = "companiesJson";
+
+    @Value("${cache.users.maxSize:10000}")
+    private long usersMaxSize;
+
+    @Value("${cache.users.ttl:10m}")
+    private Duration usersTtl;
+
+    @Value("${cache.companies.maxSize:64MB}")
+    private DataSize companiesMaxSize;
+
+    @Value("${cache.companies.ttl:10m}")
+    private Duration companiesTtl;
+
+    @Value("${cache.companies.json.maxSize:64MB}")
+    private DataSize companiesJsonMaxSize;
+
+    @Bean
+    public CacheManager cacheManager() {
+        var cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(USERS, Caffeine.newBuilder()
+                .maximumSize(usersMaxSize)
+                .expireAfterWrite(usersTtl)
+                .recordStats()
+                .build());
+        // Bounded by an estimate of the bytes held rather than by entries, since a company with many branches
+        // holds all of them.
+        cacheManager.registerCustomCache(COMPANIES, Caffeine.newBuilder()
+                .maximumWeight(companiesMaxSize.toBytes())
+                .weigher((key, value) -> value instanceof Versioned<?> versioned
+                        && versioned.value() instanceof CompanyResponse company ? 16 + estimateSize(company) : 1)
+                .expireAfterWrite(companiesTtl)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(COMPANIES_JSON, Caffeine.newBuilder()
+                .maximumWeight(companiesJsonMaxSize.toBytes())
+                .weigher((key, value) -> value instanceof CompanyJson json ? 64 + json.size() : 1)
+                .expireAfterWrite(companiesTtl)
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+
+    /**
+     * Rough heap size of a company response: object headers and references plus two bytes per character.
+     */
+    static int estimateSize(CompanyResponse company) {
+        var size = 64 + estimateSize(company.getName()) + estimateSize(company.getCnpj());
+        var address = company.getAddress();
+        if (address != null) {
+            size += estimateSize(address);
+        }
+        if (company.getCompanyBranches() != null) {
+            size += 48;
+            for (var branch : company.getCompanyBranches()) {
+                size += 16 + estimateSize(branch);
+            }
+        }
+        return size;
+    }
+
+    private static int estimateSize(AddressResponse address) {
+        return 48 + estimateSize(address.getStreet()) + estimateSize(address.getCity())
+                + estimateSize(address.getState());
+    }
+
+    private static int estimateSize(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+}
@@ -0,0 +1,23 @@
+package br.com.contact.api.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Responses that support sparse fieldsets name the {@link #FIELDS} filter. It writes every attribute unless a
+     * request narrows it down, see {@code FieldsResponseBodyAdvice}.
+     */
+    public static final String FIELDS = "fields";
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsFilterCustomizer() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .addFilter(FIELDS, SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.contact.api.config.security;
+
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.repository.PermissionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Immutable view of the {@code permissions} table, loaded once at startup. Each permission gets an ordinal
+ * (its position by id) so a set of roles travels as a bitmask, and authorities are shared singletons.
+ */
+@Component
+@RequiredArgsConstructor
+public class PermissionRegistry {
+
+    private final Logger logger = Logger.getLogger(PermissionRegistry.class.getName());
+
+    private final PermissionRepository permissionRepository;
+
+    private List<String> roles = List.of();
+    private List<GrantedAuthority> authorities = List.of();
+    private Map<String, Integer> ordinals = Map.of();
+    private final Map<Long, List<GrantedAuthority>> authoritiesByMask = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    protected void init() {
+        var permissions = this.permissionRepository.findAll(Sort.by("id"));
+        if (permissions.size() > Long.SIZE) {
+            throw new IllegalStateException("At most %d permissions fit in a role mask".formatted(Long.SIZE));
+        }
+        var names = new ArrayList<String>();
+        var ordinalsByName = new HashMap<String, Integer>();
+        for (Permission permission : permissions) {
+            ordinalsByName.put(permission.getDescription(), names.size());
+            names.add(permission.getDescription());
+        }
+        this.roles = List.copyOf(names);
+        this.authorities = names.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+        this.ordinals = Map.copyOf(ordinalsByName);
+        this.authoritiesByMask.clear();
+        logger.info("Loaded %d permissions!".formatted(this.roles.size()));
+    }
+
+    public long maskOf(Collection<String> roleNames) {
+        long mask = 0;
+        for (String roleName : roleNames) {
+            var ordinal = this.ordinals.get(roleName);
+            if (ordinal != null) {
+                mask |= 1L << ordinal;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * The shared authorities of the named roles. A role added to the table after startup has no ordinal and gets
+     * an instance of its own.
+     */
+    public List<GrantedAuthority> authoritiesOf(Collection<String> roleNames) {
+        var shared = this.authoritiesOf(this.maskOf(roleNames));
+        if (shared.size() == roleNames.size()) {
+            return shared;
+        }
+        var result = new ArrayList<>(shared);
+        for (String roleName : roleNames) {
+            if (!this.ordinals.containsKey(roleName)) {
+                result.add(new SimpleGrantedAuthority(roleName));
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Authorities for the mask, built once per distinct mask and shared afterwards.
+     */
+    public List<GrantedAuthority> authoritiesOf(long mask) {
+        return this.authoritiesByMask.computeIfAbsent(mask, key -> {
+            var result = new ArrayList<GrantedAuthority>(Long.bitCount(key));
+            for (int ordinal = 0; ordinal < this.authorities.size(); ordinal++) {
+                if ((key & (1L << ordinal)) != 0) {
+                    result.add(this.authorities.get(ordinal));
+                }
+            }
+            return List.copyOf(result);
+        });
+    }
+}
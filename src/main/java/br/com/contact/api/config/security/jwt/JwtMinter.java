@@ -0,0 +1,103 @@
+package br.com.contact.api.config.security.jwt;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Writes HS256 tokens directly, producing the same bytes as the {@code java-jwt} builder for the claims this
+ * application uses: the constant header is encoded once, the payload is written into a reused buffer in the
+ * builder's claim order, and each thread keeps its own initialized {@link Mac}.
+ */
+final class JwtMinter {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final String HEADER = ENCODER.encodeToString(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8)) + ".";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final ThreadLocal<Mac> macs;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    JwtMinter(byte[] secret) {
+        var key = new SecretKeySpec(secret, "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                var mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available", e);
+            }
+        });
+    }
+
+    Payload payload() {
+        var json = buffers.get();
+        json.setLength(0);
+        json.append('{');
+        return new Payload(json);
+    }
+
+    final class Payload {
+        private final StringBuilder json;
+
+        private Payload(StringBuilder json) {
+            this.json = json;
+        }
+
+        Payload claim(String name, long value) {
+            name(name).append(value);
+            return this;
+        }
+
+        Payload claim(String name, String value) {
+            if (value != null) {
+                name(name);
+                string(value);
+            }
+            return this;
+        }
+
+        String sign() {
+            json.append('}');
+            var signingInput = HEADER + ENCODER.encodeToString(json.toString().getBytes(StandardCharsets.UTF_8));
+            var signature = macs.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + ENCODER.encodeToString(signature);
+        }
+
+        private StringBuilder name(String name) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            string(name);
+            return json.append(':');
+        }
+
+        private void string(String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                var c = value.charAt(i);
+                switch (c) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\b' -> json.append("\\b");
+                    case '\f' -> json.append("\\f");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                        } else {
+                            json.append(c);
+                        }
+                    }
+                }
+            }
+            json.append('"');
+        }
+    }
+}
@@ -1,23 +1,38 @@
 package br.com.contact.api.config.security.jwt;
 
+import br.com.contact.api.config.security.PermissionRegistry;
 import br.com.contact.api.entity.model.security.TokenResponse;
 import br.com.contact.api.service.exceptions.AuthorizationException;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -29,17 +44,62 @@ public class JwtTokenProvider {
     @Value("${security.jwt.jwtExpiration}")
     private long jwtExpiration;
 
+    @Value("${security.jwt.verifiedCacheSize:10000}")
+    private long verifiedCacheSize;
+
+    /**
+     * When enabled the authenticated principal is rebuilt from the token claims only, without loading the user.
+     */
+    @Value("${security.jwt.stateless:false}")
+    private boolean stateless;
+
     private final UserDetailsService userDetailsService;
 
+    private final MeterRegistry meterRegistry;
+
+    private final TokenVersionRegistry tokenVersions;
+
+    private final PermissionRegistry permissionRegistry;
+
     private static final String BEARER = "Bearer ";
     private static final String ROLES = "roles";
+    private static final String ROLE_MASK = "rol";
+    private static final String VERSION = "ver";
+    private static final String ISSUED_AT = "iat";
+    private static final String EXPIRES_AT = "exp";
+    private static final String SUBJECT = "sub";
+    private static final String ISSUER = "iss";
+    private static final String JWT_ID = "jti";
 
     Algorithm algorithm = null;
 
+    private JWTVerifier verifier;
+
+    private JwtMinter minter;
+
+    /**
+     * Issuer URL per scheme, host, port and context path; bounded because the host comes from the request.
+     */
+    private final Cache<IssuerKey, String> issuers = Caffeine.newBuilder().maximumSize(64).build();
+
+    /**
+     * Tokens whose signature was already checked on this node, keyed by the SHA-256 of the raw token and
+     * kept only until the token itself expires.
+     */
+    private Cache<String, DecodedJWT> verifiedTokens;
+
     @PostConstruct
     protected void init() {
         jwtSecret = Base64.getEncoder().encodeToString(jwtSecret.getBytes());
         algorithm = Algorithm.HMAC256(jwtSecret.getBytes());
+        verifier = JWT.require(algorithm).build();
+        minter = new JwtMinter(jwtSecret.getBytes());
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified");
     }
 
     public TokenResponse createAccessToken(String username, List<String> roles) {
@@ -52,52 +112,90 @@ public class JwtTokenProvider {
     }
 
 
-    public TokenResponse refreshToken(String refreshToken) {
+    /**
+     * Verifies a refresh token and returns its claims. Whether it was already used is up to the caller.
+     */
+    public DecodedJWT verifyRefreshToken(String refreshToken) {
         if (refreshToken.contains(BEARER)) refreshToken =
                 refreshToken.substring(BEARER.length());
 
-        var verifier = JWT.require(algorithm).build();
         var decodedJWT = verifier.verify(refreshToken);
-        String username = decodedJWT.getSubject();
-        List<String> roles = decodedJWT.getClaim(ROLES).asList(String.class);
-        return createAccessToken(username, roles);
+        if (!tokenVersions.isCurrent(decodedJWT.getSubject(), decodedJWT.getClaim(VERSION).asInt())) {
+            throw new AuthorizationException("Expired or invalid JWT token!");
+        }
+        return decodedJWT;
     }
 
     private String getAccessToken(String username, List<String> roles, Date now, Date validity) {
-        String issuerUrl = ServletUriComponentsBuilder
-                .fromCurrentContextPath().build().toUriString();
-        return JWT.create()
-                .withClaim(ROLES, roles)
-                .withIssuedAt(now)
-                .withExpiresAt(validity)
-                .withSubject(username)
-                .withIssuer(issuerUrl)
-                .sign(algorithm)
-                .strip();
+        return minter.payload()
+                .claim(ROLE_MASK, permissionRegistry.maskOf(roles))
+                .claim(VERSION, tokenVersions.forMinting(username))
+                .claim(ISSUED_AT, toSeconds(now))
+                .claim(EXPIRES_AT, toSeconds(validity))
+                .claim(SUBJECT, username)
+                .claim(ISSUER, currentIssuer())
+                .sign();
     }
 
     private String getRefreshToken(String username, List<String> roles, Date now) {
         var validityRefreshToken = new Date(now.getTime() + (jwtExpiration * 3));
-        return JWT.create()
-                .withClaim(ROLES, roles)
-                .withIssuedAt(now)
-                .withExpiresAt(validityRefreshToken)
-                .withSubject(username)
-                .sign(algorithm)
-                .strip();
+        return minter.payload()
+                .claim(ROLE_MASK, permissionRegistry.maskOf(roles))
+                .claim(VERSION, tokenVersions.forMinting(username))
+                .claim(ISSUED_AT, toSeconds(now))
+                .claim(EXPIRES_AT, toSeconds(validityRefreshToken))
+                .claim(SUBJECT, username)
+                .claim(JWT_ID, UUID.randomUUID().toString())
+                .sign();
+    }
+
+    private static long toSeconds(Date date) {
+        return date.getTime() / 1000;
+    }
+
+    private String currentIssuer() {
+        var request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+        var key = new IssuerKey(request.getScheme(), request.getServerName(), request.getServerPort(),
+                request.getContextPath());
+        return issuers.get(key, k -> ServletUriComponentsBuilder.fromContextPath(request).build().toUriString());
     }
 
     public Authentication getAuthentication(String token) {
         var decodedJWT = decodedToken(token);
-        var userDetails = this.userDetailsService
-                .loadUserByUsername(decodedJWT.getSubject());
+        var username = decodedJWT.getSubject();
+        if (!tokenVersions.isCurrent(username, decodedJWT.getClaim(VERSION).asInt())) {
+            return null;
+        }
+        if (stateless) {
+            return new UsernamePasswordAuthenticationToken(username, "", authoritiesOf(decodedJWT));
+        }
+        var userDetails = this.userDetailsService.loadUserByUsername(username);
         return new UsernamePasswordAuthenticationToken(userDetails, "", userDetails.getAuthorities());
     }
 
+    /**
+     * Authorities from the role mask, falling back to the role names of tokens minted before the mask existed.
+     */
+    private List<GrantedAuthority> authoritiesOf(DecodedJWT decodedJWT) {
+        var mask = decodedJWT.getClaim(ROLE_MASK).asLong();
+        if (mask != null) {
+            return permissionRegistry.authoritiesOf(mask);
+        }
+        var roles = decodedJWT.getClaim(ROLES).asList(String.class);
+        return roles == null ? List.of() : permissionRegistry.authoritiesOf(permissionRegistry.maskOf(roles));
+    }
+
     private DecodedJWT decodedToken(String token) {
-        var alg = Algorithm.HMAC256(jwtSecret.getBytes());
-        var verifier = JWT.require(alg).build();
-        return verifier.verify(token);
+        return verifiedTokens.get(sha256(token), key -> verifier.verify(token));
+    }
+
+    private static String sha256(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     public String resolveToken(HttpServletRequest req) {
@@ -117,4 +215,30 @@ public class JwtTokenProvider {
             throw new AuthorizationException("Expired or invalid JWT token!");
         }
     }
+
+    private record IssuerKey(String scheme, String host, int port, String contextPath) {
+    }
+
+    private static class TokenExpiry implements Expiry<String, DecodedJWT> {
+
+        @Override
+        public long expireAfterCreate(String key, DecodedJWT token, long currentTime) {
+            var expiresAt = token.getExpiresAt();
+            if (expiresAt == null) {
+                return 0;
+            }
+            var remaining = expiresAt.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remaining, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, DecodedJWT token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, DecodedJWT token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package br.com.contact.api.config.security.jwt;
+
+import br.com.contact.api.entity.User;
+import br.com.contact.api.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Per-user token version, persisted in {@code users.token_version}. Every token carries the version current at
+ * minting time, and bumping the version revokes all tokens issued before it. Versions are read through a small
+ * cache: the node that bumps a version evicts it at once, other nodes see it once their entry expires, after
+ * {@code security.jwt.tokenVersion.ttl}. A missing user is cached as {@link #NO_USER} for the same time, so
+ * tokens of deleted users are rejected without a query per request and are never current.
+ */
+@Component
+@RequiredArgsConstructor
+public class TokenVersionRegistry {
+
+    static final int NO_USER = -1;
+
+    private final UserRepository userRepository;
+
+    @Value("${security.jwt.tokenVersion.maxSize:10000}")
+    private long maxSize;
+
+    @Value("${security.jwt.tokenVersion.ttl:30s}")
+    private Duration ttl;
+
+    private Cache<String, Integer> versions;
+
+    @PostConstruct
+    protected void init() {
+        versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * The version of the user, {@link #NO_USER} when there is no such user.
+     */
+    public int current(String username) {
+        return versions.get(username, key -> userRepository.findTokenVersionByUsername(key).orElse(NO_USER));
+    }
+
+    /**
+     * The version to write into a new token. Tokens are only minted for users that exist, so a cached
+     * {@link #NO_USER} is from before the user was created, possibly on another node, and is read again.
+     */
+    public int forMinting(String username) {
+        var current = current(username);
+        if (current == NO_USER) {
+            versions.invalidate(username);
+            current = current(username);
+        }
+        return Math.max(current, 0);
+    }
+
+    public boolean isCurrent(String username, Integer version) {
+        var current = current(username);
+        return current != NO_USER && (version == null ? 0 : version) >= current;
+    }
+
+    /**
+     * Bumps the version of a managed user, written when its transaction flushes.
+     */
+    public void revoke(User user) {
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        evict(user.getUsername());
+    }
+
+    /**
+     * Forgets the cached version, at once and again after the current transaction commits, since a concurrent
+     * request may read the old row in between.
+     */
+    public void evict(String username) {
+        if (username == null) {
+            return;
+        }
+        versions.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.invalidate(username);
+                }
+            });
+        }
+    }
+}
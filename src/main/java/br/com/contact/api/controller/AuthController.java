@@ -3,6 +3,8 @@ package br.com.contact.api.controller;
 import br.com.contact.api.entity.model.security.AccountCredentialsRequest;
 import br.com.contact.api.entity.model.security.TokenResponse;
 import br.com.contact.api.service.AuthService;
+import br.com.contact.api.service.LoginThrottleService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -14,9 +16,12 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final AuthService authService;
+    private final LoginThrottleService loginThrottleService;
 
     @PostMapping(value = "/login")
-    public ResponseEntity<TokenResponse> login(@Valid @RequestBody AccountCredentialsRequest request) {
+    public ResponseEntity<TokenResponse> login(@Valid @RequestBody AccountCredentialsRequest request,
+                                               HttpServletRequest httpRequest) {
+        this.loginThrottleService.acquire(request.getUsername(), httpRequest.getRemoteAddr());
         return ResponseEntity.ok().body(this.authService.login(request));
     }
 
@@ -1,20 +1,39 @@
 package br.com.contact.api.controller;
 
 import br.com.contact.api.entity.model.request.CompanyRequest;
+import br.com.contact.api.entity.model.response.CompanyGraphResponse;
+import br.com.contact.api.entity.model.response.CompanyGraphSummaryResponse;
+import br.com.contact.api.entity.model.response.CompanyHierarchyResponse;
+import br.com.contact.api.entity.model.response.CompanyImportResponse;
+import br.com.contact.api.entity.model.response.CursorPageResponse;
 import br.com.contact.api.entity.model.response.CompanyResponse;
+import br.com.contact.api.service.ExportFormat;
+import br.com.contact.api.service.ExportService;
+import br.com.contact.api.service.ResponseShape;
+import br.com.contact.api.service.CompanyGraphService;
+import br.com.contact.api.service.CompanyHierarchyService;
+import br.com.contact.api.service.CompanyImportService;
+import br.com.contact.api.service.CompanyJsonService;
+import br.com.contact.api.service.CompanyJsonService.CompanyJson;
 import br.com.contact.api.service.CompanyService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/companies")
@@ -23,43 +42,200 @@ public class CompanyController {
 
     private final CompanyService companyService;
 
+    private final ExportService exportService;
+
+    private final CompanyImportService companyImportService;
+
+    private final CompanyHierarchyService companyHierarchyService;
+
+    private final CompanyGraphService companyGraphService;
+
+    private final CompanyJsonService companyJsonService;
+
     @GetMapping
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<List<CompanyResponse>> findAll() {
-        return ResponseEntity.ok().body(this.companyService.findAll());
+    public ResponseEntity<List<CompanyResponse>> findAll(
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand
+    ) {
+        return ResponseEntity.ok().body(this.companyService.findAll(ResponseShape.from(fields, expand)));
     }
 
+    /**
+     * Offset pagination, kept for compatibility. With {@code count=false} the total count query is skipped and
+     * the response only tells whether a next page exists.
+     */
     @GetMapping("/pageable")
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<Page<CompanyResponse>> findAllPageable(
+    public ResponseEntity<Slice<CompanyResponse>> findAllPageable(
             @RequestParam(value = "page", defaultValue = "0") Integer page,
             @RequestParam(value = "size", defaultValue = "12") Integer size,
-            @RequestParam(value = "direction", defaultValue = "asc") String direction
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "count", defaultValue = "true") Boolean count,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand
     ) {
         var sortDirection = "desc".equalsIgnoreCase(direction) ? Direction.DESC : Direction.ASC;
-        var pageable = PageRequest.of(page, size, Sort.by(sortDirection, "name"));
-        return ResponseEntity.ok().body(this.companyService.findAllPageable(pageable));
+        var pageable = PageRequest.of(page, size, Sort.by(sortDirection, "name", "id"));
+        var shape = ResponseShape.from(fields, expand);
+        if (Boolean.FALSE.equals(count)) {
+            return ResponseEntity.ok().body(this.companyService.findAllSlice(pageable, shape));
+        }
+        return ResponseEntity.ok().body(this.companyService.findAllPageable(pageable, shape));
+    }
+
+    /**
+     * Keyset pagination on {@code (name, id)}. Pass the {@code next} value of a response as {@code cursor} to get
+     * the following page; the direction of the first page is kept.
+     */
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<CursorPageResponse<CompanyResponse>> findAllByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "12") Integer size,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand
+    ) {
+        var descending = "desc".equalsIgnoreCase(direction);
+        return ResponseEntity.ok().body(this.companyService.findAllByCursor(cursor, Math.max(size, 1), descending,
+                ResponseShape.from(fields, expand)));
     }
 
-    @GetMapping("/distinct")
+    /**
+     * The companies that are no other company's branch, the roots of the hierarchy.
+     */
+    @GetMapping({"/distinct", "/roots"})
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<List<CompanyResponse>> findAllDistinctId() {
-        return ResponseEntity.ok().body(this.companyService.findAllDistinctId());
+    public ResponseEntity<List<CompanyResponse>> findAllDistinctId(
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand
+    ) {
+        return ResponseEntity.ok().body(this.companyService.findAllDistinctId(ResponseShape.from(fields, expand)));
     }
 
+    /**
+     * Every company as {@code ndjson} or {@code csv}, written while the rows are read so the whole table never
+     * sits in memory.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format
+    ) {
+        var exportFormat = ExportFormat.from(format);
+        StreamingResponseBody body = out -> this.exportService.exportCompanies(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
+    }
+
+    /**
+     * Company reads write the direct branches only; {@code expand=branches:N} includes {@code N} levels, up to
+     * {@value ResponseShape#MAX_DEPTH}, and {@code fields} names the attributes to write.
+     * <p>
+     * Reads with at most one level of branches carry an ETag, and one matching {@code If-None-Match} is answered
+     * with 304 after probing only the version. Deeper levels change without the company's version, so they have
+     * none.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<CompanyResponse> findById(@PathVariable Long id) {
-        return ResponseEntity.ok().body(this.companyService.findById(id));
+    public ResponseEntity<?> findById(
+            @PathVariable Long id,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        var shape = ResponseShape.from(fields, expand);
+        if (shape.branchDepth() > 1) {
+            return ResponseEntity.ok().body(this.companyService.findById(id, shape));
+        }
+        if (ifNoneMatch != null) {
+            var etag = ETags.of(this.companyService.findVersion(id), shape);
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+        }
+        if (shape.equals(ResponseShape.DEFAULT) && this.companyJsonService.isEnabled()) {
+            return this.writeJson(this.companyJsonService.findById(id), acceptEncoding);
+        }
+        // The tag is the version the body was read at, so it always names what is sent.
+        var company = this.companyService.findVersionedById(id, shape);
+        return ResponseEntity.ok().eTag(ETags.of(company.version(), shape)).body(company.value());
+    }
+
+    @GetMapping("/{id}/children")
+    public ResponseEntity<List<CompanyHierarchyResponse>> findChildren(@PathVariable Long id) {
+        return ResponseEntity.ok().body(this.companyHierarchyService.findChildren(id));
+    }
+
+    @GetMapping("/{id}/descendants")
+    public ResponseEntity<List<CompanyHierarchyResponse>> findDescendants(@PathVariable Long id) {
+        return ResponseEntity.ok().body(this.companyHierarchyService.findDescendants(id));
+    }
+
+    @GetMapping("/{id}/ancestors")
+    public ResponseEntity<List<CompanyHierarchyResponse>> findAncestors(@PathVariable Long id) {
+        return ResponseEntity.ok().body(this.companyHierarchyService.findAncestors(id));
+    }
+
+    /**
+     * Depth and subtree size of the company, answered from the in-memory graph without touching the database.
+     * With {@code reaches} it also tells whether that company sits anywhere below this one.
+     */
+    @GetMapping("/{id}/graph")
+    public ResponseEntity<CompanyGraphResponse> findGraph(
+            @PathVariable Long id,
+            @RequestParam(value = "reaches", required = false) Long reaches
+    ) {
+        return ResponseEntity.ok().body(this.companyGraphService.findById(id, reaches));
+    }
+
+    /**
+     * Roots of the hierarchy and whether its links loop anywhere, from the in-memory graph.
+     */
+    @GetMapping("/graph")
+    public ResponseEntity<CompanyGraphSummaryResponse> findGraphSummary() {
+        return ResponseEntity.ok().body(this.companyGraphService.summary());
     }
 
     @PostMapping
     public ResponseEntity<CompanyResponse> create(@Valid @RequestBody CompanyRequest companyRequest) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(this.companyService.create(companyRequest));
+        var created = this.companyService.createVersioned(companyRequest);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(ETags.of(created.version(), ResponseShape.DEFAULT))
+                .body(created.value());
     }
 
+    /**
+     * Bulk import from a JSON array, NDJSON or a CSV file read as it is uploaded. Rows that fail validation, repeat
+     * a CNPJ or name an unknown branch are listed in the response; the others are imported.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            "text/csv"})
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<CompanyImportResponse> importCompanies(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body
+    ) throws IOException {
+        if (MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"))) {
+            return ResponseEntity.ok().body(this.companyImportService.importCsv(body));
+        }
+        return ResponseEntity.ok().body(this.companyImportService.importJson(body));
+    }
+
+    /**
+     * With {@code If-Match} the update only applies to the version the client read, otherwise it fails with 412.
+     * The response carries the new ETag, for the next conditional write.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<CompanyResponse> update(@PathVariable Long id, @Valid @RequestBody CompanyRequest companyRequest) {
-        return ResponseEntity.ok().body(this.companyService.update(id, companyRequest));
+    public ResponseEntity<CompanyResponse> update(
+            @PathVariable Long id,
+            @Valid @RequestBody CompanyRequest companyRequest,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        var updated = this.companyService.update(id, companyRequest, ETags.versions(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(updated.version(), ResponseShape.DEFAULT)).body(updated.value());
     }
 
     @DeleteMapping("/{id}")
@@ -67,4 +243,53 @@ public class CompanyController {
         this.companyService.delete(id);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the cached bytes as they are, gzipped when the client accepts it and the body is large enough to
+     * have been compressed.
+     */
+    private ResponseEntity<byte[]> writeJson(CompanyJson json, String acceptEncoding) {
+        var response = ResponseEntity.ok()
+                .eTag(ETags.of(json.version(), ResponseShape.DEFAULT))
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (json.gzip() != null && acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(json.gzip());
+        }
+        return response.body(json.json());
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip: named with a non-zero quality, or not named while
+     * {@code *} is. A quality of zero refuses it, as does a quality that does not parse.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (var coding : acceptEncoding.split(",")) {
+            var parameters = coding.split(";");
+            var name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            var quality = 1.0;
+            for (int i = 1; i < parameters.length; i++) {
+                var parameter = parameters[i].trim();
+                if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = gzip == null ? quality : Math.max(gzip, quality);
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        var quality = gzip != null ? gzip : any;
+        return quality != null && quality > 0;
+    }
+}
@@ -0,0 +1,71 @@
+package br.com.contact.api.controller;
+
+import br.com.contact.api.service.ResponseShape;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Strong entity tags made from the version column. The default shape is tagged with the version alone, other
+ * shapes with the version and a hash of the shape, so two shapes of one version never share a tag.
+ */
+final class ETags {
+
+    private static final String ANY = "*";
+    private static final String WEAK = "W/";
+
+    private ETags() {
+    }
+
+    static String of(long version, ResponseShape shape) {
+        if (shape.equals(ResponseShape.DEFAULT)) {
+            return "\"%d\"".formatted(version);
+        }
+        return "\"%d-%08x\"".formatted(version, shape.hashCode());
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header names the tag, comparing weakly as that header is compared.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (var tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals(ANY) || strip(tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The versions named by an {@code If-Match} header, {@code null} when it is absent or {@code *} and so
+     * allows any. Weak tags never match, and neither do tags this API did not write.
+     */
+    static List<Long> versions(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals(ANY)) {
+            return null;
+        }
+        var versions = new ArrayList<Long>();
+        for (var tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith(WEAK) || tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+                continue;
+            }
+            var value = tag.substring(1, tag.length() - 1);
+            var dash = value.indexOf('-');
+            try {
+                versions.add(Long.parseLong(dash < 0 ? value : value.substring(0, dash)));
+            } catch (NumberFormatException e) {
+                // Not one of ours, it matches no version.
+            }
+        }
+        return versions;
+    }
+
+    private static String strip(String tag) {
+        return tag.startsWith(WEAK) ? tag.substring(WEAK.length()) : tag;
+    }
+}
@@ -0,0 +1,36 @@
+package br.com.contact.api.controller;
+
+import br.com.contact.api.config.JacksonConfig;
+import br.com.contact.api.service.ResponseShape;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+/**
+ * Applies the {@code fields} parameter of company and user reads: only the listed attributes of the responses
+ * are written, at every level of nesting.
+ */
+@ControllerAdvice(assignableTypes = {CompanyController.class, UserController.class})
+public class FieldsResponseBodyAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) {
+            return;
+        }
+        var fields = ResponseShape.fields(servletRequest.getServletRequest().getParameter(JacksonConfig.FIELDS));
+        if (!fields.isEmpty()) {
+            bodyContainer.setFilters(new SimpleFilterProvider()
+                    .addFilter(JacksonConfig.FIELDS, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+        }
+    }
+}
@@ -1,19 +1,29 @@
 package br.com.contact.api.controller;
 
 import br.com.contact.api.entity.model.request.UserRequest;
-import br.com.contact.api.entity.model.response.CompanyResponse;
+import br.com.contact.api.entity.model.response.CursorPageResponse;
+import br.com.contact.api.entity.model.response.UserImportResponse;
 import br.com.contact.api.entity.model.response.UserResponse;
+import br.com.contact.api.service.ExportFormat;
+import br.com.contact.api.service.ExportService;
+import br.com.contact.api.service.ResponseShape;
+import br.com.contact.api.service.UserProvisioningService;
 import br.com.contact.api.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -23,38 +33,126 @@ public class UserController {
 
     private final UserService userService;
 
+    private final ExportService exportService;
+
+    private final UserProvisioningService userProvisioningService;
+
     @GetMapping
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<List<UserResponse>> findAll() {
-        return ResponseEntity.ok().body(this.userService.findAll());
+    public ResponseEntity<List<UserResponse>> findAll(
+            @RequestParam(value = "fields", required = false) String fields
+    ) {
+        return ResponseEntity.ok().body(this.userService.findAll(ResponseShape.from(fields, null)));
     }
 
+    /**
+     * Offset pagination, kept for compatibility. With {@code count=false} the total count query is skipped and
+     * the response only tells whether a next page exists.
+     */
     @GetMapping("/pageable")
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<Page<UserResponse>> findAllPageable(
+    public ResponseEntity<Slice<UserResponse>> findAllPageable(
             @RequestParam(value = "page", defaultValue = "0") Integer page,
             @RequestParam(value = "size", defaultValue = "12") Integer size,
-            @RequestParam(value = "direction", defaultValue = "asc") String direction
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "count", defaultValue = "true") Boolean count,
+            @RequestParam(value = "fields", required = false) String fields
     ) {
         var sortDirection = "desc".equalsIgnoreCase(direction) ? Sort.Direction.DESC : Sort.Direction.ASC;
-        var pageable = PageRequest.of(page, size, Sort.by(sortDirection, "name"));
-        return ResponseEntity.ok().body(this.userService.findAllPageable(pageable));
+        var pageable = PageRequest.of(page, size, Sort.by(sortDirection, "fullname", "id"));
+        var shape = ResponseShape.from(fields, null);
+        if (Boolean.FALSE.equals(count)) {
+            return ResponseEntity.ok().body(this.userService.findAllSlice(pageable, shape));
+        }
+        return ResponseEntity.ok().body(this.userService.findAllPageable(pageable, shape));
+    }
+
+    /**
+     * Keyset pagination on {@code (fullname, id)}. Pass the {@code next} value of a response as {@code cursor} to get
+     * the following page; the direction of the first page is kept.
+     */
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<CursorPageResponse<UserResponse>> findAllByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "12") Integer size,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "fields", required = false) String fields
+    ) {
+        var descending = "desc".equalsIgnoreCase(direction);
+        return ResponseEntity.ok().body(this.userService.findAllByCursor(cursor, Math.max(size, 1), descending,
+                ResponseShape.from(fields, null)));
     }
 
+    /**
+     * Every user as {@code ndjson} or {@code csv}, written while the rows are read so the whole table never
+     * sits in memory.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format
+    ) {
+        var exportFormat = ExportFormat.from(format);
+        StreamingResponseBody body = out -> this.exportService.exportUsers(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
+    }
 
+    /**
+     * {@code fields} names the attributes to write; addresses left out are not loaded either. The response carries
+     * an ETag taken from the loaded user. With {@code If-None-Match} the version is probed first, and a match is
+     * answered with 304 without loading the user.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<UserResponse> findById(@PathVariable Long id) {
-        return ResponseEntity.ok().body(this.userService.findById(id));
+    public ResponseEntity<UserResponse> findById(
+            @PathVariable Long id,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        var shape = ResponseShape.from(fields, null);
+        if (ifNoneMatch != null) {
+            var etag = ETags.of(this.userService.findVersion(id), shape);
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+        }
+        var user = this.userService.findVersionedById(id, shape);
+        return ResponseEntity.ok().eTag(ETags.of(user.version(), shape)).body(user.value());
     }
 
     @PostMapping
     public ResponseEntity<UserResponse> create(@Valid @RequestBody UserRequest userRequest) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(this.userService.create(userRequest));
+        var created = this.userService.createVersioned(userRequest);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(ETags.of(created.version(), ResponseShape.DEFAULT))
+                .body(created.value());
     }
 
+    /**
+     * Bulk provisioning from a JSON array or NDJSON of users shaped like the body of {@code POST /users}. Rows that
+     * fail validation, repeat a username or name an unknown permission are listed in the response; the others are
+     * created.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<UserImportResponse> provision(InputStream body) throws IOException {
+        return ResponseEntity.ok().body(this.userProvisioningService.provision(body));
+    }
+
+    /**
+     * With {@code If-Match} the update only applies to the version the client read, otherwise it fails with 412.
+     * The response carries the new ETag, for the next conditional write.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<UserResponse> update(@PathVariable Long id, @Valid @RequestBody UserRequest userRequest) {
-        return ResponseEntity.ok().body(this.userService.update(id, userRequest));
+    public ResponseEntity<UserResponse> update(
+            @PathVariable Long id,
+            @Valid @RequestBody UserRequest userRequest,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        var updated = this.userService.update(id, userRequest, ETags.versions(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(updated.version(), ResponseShape.DEFAULT)).body(updated.value());
     }
 
     @DeleteMapping("/{id}")
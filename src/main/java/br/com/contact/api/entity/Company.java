@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.io.Serializable;
 import java.util.HashSet;
@@ -35,4 +36,12 @@ public class Company implements Serializable {
             joinColumns = @JoinColumn(name = "company_id"),
             inverseJoinColumns = @JoinColumn(name = "company_branch_id"))
     private Set<Company> companyBranches = new HashSet<>();
+
+    /**
+     * Bumped on every change, including to the branches, and when a branch changes, since a company's response
+     * shows its branches. Compared on update for optimistic locking and written as the ETag.
+     */
+    @Version
+    @ColumnDefault("0")
+    private long version;
 }
\ No newline at end of file
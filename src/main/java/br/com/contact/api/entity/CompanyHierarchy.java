@@ -0,0 +1,49 @@
+package br.com.contact.api.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Closure of {@code company_branches}: one row for every company reachable from another through branches, with
+ * the length of the shortest path between them. Maintained by {@code CompanyHierarchyService}.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@IdClass(CompanyHierarchy.Key.class)
+@Table(name = "company_hierarchy",
+        indexes = @Index(name = "idx_company_hierarchy_descendant", columnList = "descendantId, depth"))
+public class CompanyHierarchy implements Serializable {
+
+    @Id
+    private Long ancestorId;
+
+    @Id
+    private Long descendantId;
+
+    private Integer depth;
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        private Long ancestorId;
+
+        private Long descendantId;
+    }
+}
@@ -0,0 +1,26 @@
+package br.com.contact.api.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "revoked_refresh_tokens")
+public class RevokedRefreshToken implements Serializable {
+
+    @Id
+    private String jti;
+
+    private Instant expiresAt;
+}
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -49,6 +50,19 @@ public class User implements UserDetails, Serializable {
     @JoinTable(name = "user_permissions", joinColumns = @JoinColumn(name = "user_id"), inverseJoinColumns = @JoinColumn(name = "permission_id"))
     private Set<Permission> permissions = new HashSet<>();
 
+    /**
+     * Bumped on every change, compared on update for optimistic locking and written as the ETag.
+     */
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
+    /**
+     * Written into every token minted for the user; bumping it revokes the tokens issued before.
+     */
+    @ColumnDefault("0")
+    private int tokenVersion;
+
 
     public List<String> getRoles() {
         List<String> roles = new ArrayList<>();
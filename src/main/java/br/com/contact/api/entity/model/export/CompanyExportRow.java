@@ -0,0 +1,9 @@
+package br.com.contact.api.entity.model.export;
+
+/**
+ * Flat, unmanaged view of a company for exports: built by a JPQL constructor expression, so streamed rows never
+ * enter the persistence context.
+ */
+public record CompanyExportRow(Long id, String name, String cnpj, String street, String city, String state,
+                               Integer zip) {
+}
@@ -0,0 +1,8 @@
+package br.com.contact.api.entity.model.export;
+
+/**
+ * Flat, unmanaged view of a user for exports; the password hash is never selected.
+ */
+public record UserExportRow(Long id, String fullname, String username, Boolean accountNonExpired,
+                            Boolean accountNonLocked, Boolean credentialsNonExpired, Boolean enabled) {
+}
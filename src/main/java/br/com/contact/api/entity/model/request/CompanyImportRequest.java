@@ -0,0 +1,34 @@
+package br.com.contact.api.entity.model.request;
+
+import br.com.contact.api.entity.model.response.AddressResponse;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.validator.constraints.br.CNPJ;
+
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * One row of a bulk import. Branches are referenced by CNPJ, since rows of the same import have no id yet.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CompanyImportRequest implements Serializable {
+
+    @NotEmpty(message = "The Name is required.")
+    private String name;
+
+    @CNPJ(message = "The CPNJ invalid.")
+    @NotEmpty(message = "The CNPJ is required.")
+    private String cnpj;
+
+    private AddressResponse address;
+
+    private Set<String> branches = new LinkedHashSet<>();
+}
@@ -0,0 +1,36 @@
+package br.com.contact.api.entity.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Where a company sits in the hierarchy: {@code depth} links below the nearest root, with {@code branches}
+ * direct branches and {@code subtreeSize} companies below it in total. {@code reaches} is only set when asked
+ * whether another company sits below this one.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CompanyGraphResponse {
+
+    private Long id;
+
+    private Integer depth;
+
+    private Integer branches;
+
+    private Integer subtreeSize;
+
+    private Integer ancestors;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean reaches;
+
+    public CompanyGraphResponse(Long id, Integer depth, Integer branches, Integer subtreeSize, Integer ancestors) {
+        this(id, depth, branches, subtreeSize, ancestors, null);
+    }
+}
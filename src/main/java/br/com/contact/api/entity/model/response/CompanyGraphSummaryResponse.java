@@ -0,0 +1,27 @@
+package br.com.contact.api.entity.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The whole hierarchy at a glance: how many companies and branch links it holds, which companies are no other
+ * company's branch, and whether the links loop anywhere.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CompanyGraphSummaryResponse {
+
+    private Integer companies;
+
+    private Integer links;
+
+    private List<Long> roots;
+
+    private Boolean cyclic;
+}
@@ -0,0 +1,25 @@
+package br.com.contact.api.entity.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A company related to another one through branches; {@code depth} is the number of links on the shortest path
+ * between the two.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CompanyHierarchyResponse {
+
+    private Long id;
+
+    private String name;
+
+    private String cnpj;
+
+    private Integer depth;
+}
@@ -0,0 +1,22 @@
+package br.com.contact.api.entity.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CompanyImportResponse {
+
+    private long imported;
+
+    private long linked;
+
+    private List<ImportErrorResponse> errors = new ArrayList<>();
+}
@@ -1,5 +1,7 @@
 package br.com.contact.api.entity.model.response;
 
+import br.com.contact.api.config.JacksonConfig;
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -13,6 +15,7 @@ import java.util.Set;
 @NoArgsConstructor
 @Getter
 @Setter
+@JsonFilter(JacksonConfig.FIELDS)
 public class CompanyResponse implements Serializable {
 
     private Long id;
@@ -0,0 +1,21 @@
+package br.com.contact.api.entity.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String next;
+}
@@ -0,0 +1,23 @@
+package br.com.contact.api.entity.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A rejected import row; {@code row} counts data rows from 1, without the CSV header, and {@code key} is the
+ * CNPJ or username of the row when it could be read.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class ImportErrorResponse {
+
+    private long row;
+
+    private String key;
+
+    private String message;
+}
@@ -0,0 +1,20 @@
+package br.com.contact.api.entity.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class UserImportResponse {
+
+    private long imported;
+
+    private List<ImportErrorResponse> errors = new ArrayList<>();
+}
@@ -1,6 +1,8 @@
 package br.com.contact.api.entity.model.response;
 
+import br.com.contact.api.config.JacksonConfig;
 import br.com.contact.api.entity.Permission;
+import com.fasterxml.jackson.annotation.JsonFilter;
 import jakarta.persistence.Column;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -14,6 +16,7 @@ import java.util.Set;
 @NoArgsConstructor
 @Getter
 @Setter
+@JsonFilter(JacksonConfig.FIELDS)
 public class UserResponse {
     private Long id;
 
@@ -0,0 +1,47 @@
+package br.com.contact.api.entity.model.security;
+
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+/**
+ * Immutable copy of the security relevant part of a {@link User}, safe to share between threads and keep in
+ * a cache. It deliberately does not implement {@code CredentialsContainer}, so the authentication manager
+ * never erases the password hash of a cached instance.
+ */
+@Getter
+@AllArgsConstructor
+public final class UserSnapshot implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final boolean accountNonExpired;
+    private final boolean accountNonLocked;
+    private final boolean credentialsNonExpired;
+    private final boolean enabled;
+    private final List<String> roles;
+    private final List<GrantedAuthority> authorities;
+
+    /**
+     * The authorities are the instances shared through the registry rather than new ones per snapshot.
+     */
+    public static UserSnapshot from(User user, PermissionRegistry permissionRegistry) {
+        var roles = user.getPermissions().stream()
+                .map(Permission::getDescription)
+                .toList();
+        var authorities = permissionRegistry.authoritiesOf(roles);
+        return new UserSnapshot(user.getId(), user.getUsername(), user.getPassword(),
+                Boolean.TRUE.equals(user.getAccountNonExpired()),
+                Boolean.TRUE.equals(user.getAccountNonLocked()),
+                Boolean.TRUE.equals(user.getCredentialsNonExpired()),
+                Boolean.TRUE.equals(user.getEnabled()),
+                roles, authorities);
+    }
+}
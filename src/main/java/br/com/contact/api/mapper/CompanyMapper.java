@@ -0,0 +1,55 @@
+package br.com.contact.api.mapper;
+
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.model.request.CompanyRequest;
+import br.com.contact.api.entity.model.response.CompanyResponse;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.factory.Mappers;
+
+import java.util.stream.Collectors;
+
+/**
+ * Branches in a request only carry ids; the service resolves them to entities, so they are never copied here.
+ * Responses include a bounded number of branch levels.
+ */
+@Mapper(uses = ContactInfoMapper.class)
+public interface CompanyMapper {
+
+    CompanyMapper INSTANCE = Mappers.getMapper(CompanyMapper.class);
+
+    default CompanyResponse toResponse(Company company) {
+        return this.toResponse(company, 1);
+    }
+
+    /**
+     * The company with {@code depth} levels of branches. Lazy levels below that are never touched, so never
+     * loaded, and branches that loop back cannot recurse without end.
+     */
+    default CompanyResponse toResponse(Company company, int depth) {
+        if (company == null) {
+            return null;
+        }
+        var response = this.toResponseWithoutBranches(company);
+        if (depth > 0 && company.getCompanyBranches() != null) {
+            response.setCompanyBranches(company.getCompanyBranches().stream()
+                    .map(branch -> this.toResponse(branch, depth - 1))
+                    .collect(Collectors.toSet()));
+        }
+        return response;
+    }
+
+    @Mapping(target = "companyBranches", ignore = true)
+    CompanyResponse toResponseWithoutBranches(Company company);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "companyBranches", ignore = true)
+    Company toEntity(CompanyRequest companyRequest);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "companyBranches", ignore = true)
+    void update(CompanyRequest companyRequest, @MappingTarget Company company);
+}
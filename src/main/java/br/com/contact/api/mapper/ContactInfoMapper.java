@@ -0,0 +1,37 @@
+package br.com.contact.api.mapper;
+
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.ContactInfo;
+import br.com.contact.api.entity.Phone;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.ContactInfoResponse;
+import br.com.contact.api.entity.model.response.PhoneResponse;
+import org.mapstruct.Mapper;
+import org.mapstruct.factory.Mappers;
+
+import java.util.Set;
+
+/**
+ * Embedded values shared by companies and users.
+ */
+@Mapper
+public interface ContactInfoMapper {
+
+    ContactInfoMapper INSTANCE = Mappers.getMapper(ContactInfoMapper.class);
+
+    AddressResponse toResponse(Address address);
+
+    Set<AddressResponse> toAddressResponses(Set<Address> addresses);
+
+    Address toEntity(AddressResponse address);
+
+    Set<Address> toAddresses(Set<AddressResponse> addresses);
+
+    PhoneResponse toResponse(Phone phone);
+
+    Phone toEntity(PhoneResponse phone);
+
+    ContactInfoResponse toResponse(ContactInfo contactInfo);
+
+    ContactInfo toEntity(ContactInfoResponse contactInfo);
+}
@@ -0,0 +1,47 @@
+package br.com.contact.api.mapper;
+
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.entity.model.request.UserRequest;
+import br.com.contact.api.entity.model.response.PermissionResponse;
+import br.com.contact.api.entity.model.response.UserResponse;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.factory.Mappers;
+
+/**
+ * The password is only written on creation; updates keep the stored hash.
+ */
+@Mapper(uses = ContactInfoMapper.class)
+public interface UserMapper {
+
+    UserMapper INSTANCE = Mappers.getMapper(UserMapper.class);
+
+    UserResponse toResponse(User user);
+
+    /**
+     * For responses that leave the addresses out, which are then not loaded.
+     */
+    @Mapping(target = "addresses", ignore = true)
+    UserResponse toResponseWithoutAddresses(User user);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "tokenVersion", ignore = true)
+    @Mapping(target = "roles", ignore = true)
+    @Mapping(target = "authorities", ignore = true)
+    User toEntity(UserRequest userRequest);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "password", ignore = true)
+    @Mapping(target = "tokenVersion", ignore = true)
+    @Mapping(target = "roles", ignore = true)
+    @Mapping(target = "authorities", ignore = true)
+    void update(UserRequest userRequest, @MappingTarget User user);
+
+    PermissionResponse toResponse(Permission permission);
+
+    Permission toEntity(PermissionResponse permission);
+}
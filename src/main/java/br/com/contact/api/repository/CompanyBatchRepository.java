@@ -0,0 +1,119 @@
+package br.com.contact.api.repository;
+
+import br.com.contact.api.entity.model.request.CompanyImportRequest;
+import br.com.contact.api.util.BranchGraph;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC writes for bulk imports. Hibernate cannot batch inserts of IDENTITY entities, so imported rows
+ * bypass the persistence context and go out as JDBC batches.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CompanyBatchRepository {
+
+    private static final String INSERT_COMPANY =
+            "INSERT INTO companies (name, cnpj, street, city, state, zip) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_BRANCH =
+            "INSERT INTO company_branches (company_id, company_branch_id) VALUES (?, ?)";
+
+    private static final String INSERT_HIERARCHY =
+            "INSERT INTO company_hierarchy (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public void insertAll(List<CompanyImportRequest> companies) {
+        this.jdbcTemplate.batchUpdate(INSERT_COMPANY, companies, companies.size(), (ps, company) -> {
+            var address = company.getAddress();
+            ps.setString(1, company.getName());
+            ps.setString(2, company.getCnpj());
+            ps.setString(3, address == null ? null : address.getStreet());
+            ps.setString(4, address == null ? null : address.getCity());
+            ps.setString(5, address == null ? null : address.getState());
+            if (address == null || address.getZip() == null) {
+                ps.setNull(6, Types.INTEGER);
+            } else {
+                ps.setInt(6, address.getZip());
+            }
+        });
+    }
+
+    /**
+     * @param links pairs of {@code {companyId, branchId}}
+     */
+    public void insertBranches(List<long[]> links) {
+        this.jdbcTemplate.batchUpdate(INSERT_BRANCH, links, links.size(), (ps, link) -> {
+            ps.setLong(1, link[0]);
+            ps.setLong(2, link[1]);
+        });
+    }
+
+    /**
+     * @param rows triples of {@code {ancestorId, descendantId, depth}}
+     */
+    public void insertHierarchy(List<long[]> rows) {
+        this.jdbcTemplate.batchUpdate(INSERT_HIERARCHY, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row[0]);
+            ps.setLong(2, row[1]);
+            ps.setInt(3, (int) row[2]);
+        });
+    }
+
+    /**
+     * @return pairs of {@code {companyId, branchId}} for the branches of the given companies
+     */
+    public List<long[]> findBranchLinks(Collection<Long> companyIds) {
+        return this.namedParameterJdbcTemplate.query(
+                "SELECT company_id, company_branch_id FROM company_branches WHERE company_id IN (:ids)",
+                Map.of("ids", companyIds), (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+    }
+
+    /**
+     * @return rows of {@code {ancestorId, descendantId, depth}} from the given ancestors to the given descendants
+     */
+    public List<long[]> findHierarchy(Collection<Long> ancestorIds, Collection<Long> descendantIds) {
+        return this.namedParameterJdbcTemplate.query(
+                "SELECT ancestor_id, descendant_id, depth FROM company_hierarchy "
+                        + "WHERE ancestor_id IN (:ancestors) AND descendant_id IN (:descendants)",
+                Map.of("ancestors", ancestorIds, "descendants", descendantIds),
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getInt(3)});
+    }
+
+    /**
+     * Every company id and branch link, streamed row by row into the graph's primitive arrays.
+     */
+    public BranchGraph loadBranchGraph() {
+        var builder = BranchGraph.builder();
+        this.jdbcTemplate.query("SELECT id FROM companies",
+                (RowCallbackHandler) rs -> builder.addCompany(rs.getLong(1)));
+        this.jdbcTemplate.query("SELECT company_id, company_branch_id FROM company_branches",
+                (RowCallbackHandler) rs -> builder.addLink(rs.getLong(1), rs.getLong(2)));
+        return builder.build();
+    }
+
+    public int deleteBranchLinksTo(Long branchId) {
+        return this.jdbcTemplate.update("DELETE FROM company_branches WHERE company_branch_id = ?", branchId);
+    }
+
+    public Map<String, Long> findIdsByCnpj(Collection<String> cnpjs) {
+        var ids = new HashMap<String, Long>();
+        this.namedParameterJdbcTemplate.query("SELECT id, cnpj FROM companies WHERE cnpj IN (:cnpjs)",
+                Map.of("cnpjs", cnpjs), rs -> {
+                    ids.put(rs.getString("cnpj"), rs.getLong("id"));
+                });
+        return ids;
+    }
+}
@@ -0,0 +1,57 @@
+package br.com.contact.api.repository;
+
+import br.com.contact.api.entity.CompanyHierarchy;
+import br.com.contact.api.entity.model.response.CompanyHierarchyResponse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CompanyHierarchyRepository extends JpaRepository<CompanyHierarchy, CompanyHierarchy.Key> {
+
+    // Reads seek on the primary key (ancestor) or on idx_company_hierarchy_descendant, one query each.
+
+    @Query("SELECT new br.com.contact.api.entity.model.response.CompanyHierarchyResponse(c.id, c.name, c.cnpj, "
+            + "h.depth) FROM CompanyHierarchy h JOIN Company c ON c.id = h.descendantId "
+            + "WHERE h.ancestorId = :id AND h.depth <= :maxDepth ORDER BY h.depth, c.name, c.id")
+    List<CompanyHierarchyResponse> findDescendants(@Param("id") Long id, @Param("maxDepth") int maxDepth);
+
+    @Query("SELECT new br.com.contact.api.entity.model.response.CompanyHierarchyResponse(c.id, c.name, c.cnpj, "
+            + "h.depth) FROM CompanyHierarchy h JOIN Company c ON c.id = h.ancestorId "
+            + "WHERE h.descendantId = :id ORDER BY h.depth, c.name, c.id")
+    List<CompanyHierarchyResponse> findAncestors(@Param("id") Long id);
+
+    @Query("SELECT h.ancestorId FROM CompanyHierarchy h WHERE h.descendantId = :id AND h.depth = 1")
+    List<Long> findParentIds(@Param("id") Long id);
+
+    @Query("SELECT DISTINCT h.ancestorId FROM CompanyHierarchy h WHERE h.descendantId IN :ids")
+    List<Long> findAncestorIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Which of the given companies already have {@code id} below them.
+     */
+    @Query("SELECT h.ancestorId FROM CompanyHierarchy h WHERE h.descendantId = :id AND h.ancestorId IN :ids "
+            + "ORDER BY h.ancestorId")
+    List<Long> findAncestorIdsAmong(@Param("id") Long id, @Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT h.descendantId FROM CompanyHierarchy h WHERE h.ancestorId IN :ids")
+    List<Long> findDescendantIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM CompanyHierarchy h WHERE h.ancestorId IN :ids")
+    int deleteByAncestorIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM CompanyHierarchy h WHERE h.ancestorId IN :ancestorIds AND h.descendantId IN :descendantIds")
+    int deleteByAncestorIdsAndDescendantIds(@Param("ancestorIds") Collection<Long> ancestorIds,
+                                            @Param("descendantIds") Collection<Long> descendantIds);
+
+    @Modifying
+    @Query("DELETE FROM CompanyHierarchy h WHERE h.ancestorId = :id OR h.descendantId = :id")
+    int deleteByCompanyId(@Param("id") Long id);
+}
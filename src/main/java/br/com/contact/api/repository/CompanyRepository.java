@@ -1,18 +1,109 @@
 package br.com.contact.api.repository;
 
 import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.model.export.CompanyExportRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CompanyRepository extends JpaRepository<Company, Long> {
 
-    Optional<Company> findByCnpj(String cnpj);
+    // Reads that map companies to responses fetch the first level of branches in the same query; deeper levels
+    // are loaded in batches (hibernate.default_batch_fetch_size) rather than one query per company.
 
-    @Query("SELECT c FROM Company c WHERE c.id NOT IN (SELECT DISTINCT cb.id FROM Company c JOIN c.companyBranches cb)")
+    @Override
+    @EntityGraph(attributePaths = "companyBranches")
+    List<Company> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "companyBranches")
+    Optional<Company> findById(Long id);
+
+    // The same reads without the branches, for responses that leave them out.
+
+    @Query("SELECT c FROM Company c")
+    List<Company> findAllWithoutBranches();
+
+    @Query("SELECT c FROM Company c WHERE c.id = :id")
+    Optional<Company> findWithoutBranchesById(@Param("id") Long id);
+
+    /**
+     * A primary key probe for conditional reads, which answer unchanged companies without loading them.
+     */
+    @Query("SELECT c.version FROM Company c WHERE c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * For companies whose response changed because one of their branches did. Loaded companies would keep their
+     * old version and fail their next write, so the persistence context is flushed before and cleared after.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Company c SET c.version = c.version + 1 WHERE c.id IN :ids")
+    int incrementVersions(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c FROM Company c WHERE NOT EXISTS "
+            + "(SELECT 1 FROM CompanyHierarchy h WHERE h.descendantId = c.id)")
+    List<Company> findAllDistinctCompaniesWithoutBranches();
+
+    boolean existsByCnpj(String cnpj);
+
+    boolean existsByCnpjAndIdNot(String cnpj, Long id);
+
+    @Query("SELECT c.cnpj FROM Company c WHERE c.cnpj IS NOT NULL")
+    List<String> findAllCnpjs();
+
+    /**
+     * Root companies, those that are no company's branch: an anti-join on idx_company_hierarchy_descendant.
+     */
+    @EntityGraph(attributePaths = "companyBranches")
+    @Query("SELECT c FROM Company c WHERE NOT EXISTS "
+            + "(SELECT 1 FROM CompanyHierarchy h WHERE h.descendantId = c.id)")
     List<Company> findAllDistinctCompaniesWithBranches();
+
+    @Query("SELECT c.id FROM Company c WHERE c.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Page without the {@code count(*)} query of {@link #findAll(Pageable)}.
+     */
+    Slice<Company> findAllBy(Pageable pageable);
+
+    // Keyset pagination: seeks on the (name, id) index, so every page costs the same as the first one.
+
+    @Query(value = "SELECT * FROM companies ORDER BY name, id LIMIT :limit", nativeQuery = true)
+    List<Company> findFirstOrderByNameAsc(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM companies WHERE (name, id) > (:name, :id) ORDER BY name, id LIMIT :limit",
+            nativeQuery = true)
+    List<Company> findNextOrderByNameAsc(@Param("name") String name, @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM companies ORDER BY name DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<Company> findFirstOrderByNameDesc(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM companies WHERE (name, id) < (:name, :id) ORDER BY name DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Company> findNextOrderByNameDesc(@Param("name") String name, @Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * Forward-only read for exports. It must be consumed inside a read-only transaction, so that PostgreSQL
+     * honours the fetch size instead of materializing the whole result.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new br.com.contact.api.entity.model.export.CompanyExportRow(c.id, c.name, c.cnpj, "
+            + "c.address.street, c.address.city, c.address.state, c.address.zip) FROM Company c ORDER BY c.id")
+    Stream<CompanyExportRow> streamForExport();
 }
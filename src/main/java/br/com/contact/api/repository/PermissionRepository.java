@@ -0,0 +1,9 @@
+package br.com.contact.api.repository;
+
+import br.com.contact.api.entity.Permission;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PermissionRepository extends JpaRepository<Permission, Long> {
+}
@@ -0,0 +1,27 @@
+package br.com.contact.api.repository;
+
+import br.com.contact.api.entity.RevokedRefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface RevokedRefreshTokenRepository extends JpaRepository<RevokedRefreshToken, String> {
+
+    /**
+     * Records the token id, returning 0 when it was already present, which makes "use once" atomic
+     * across nodes.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO revoked_refresh_tokens (jti, expires_at) VALUES (:jti, :expiresAt) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("jti") String jti, @Param("expiresAt") Instant expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM RevokedRefreshToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,110 @@
+package br.com.contact.api.repository;
+
+import br.com.contact.api.entity.model.request.UserRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC writes for bulk provisioning. Hibernate cannot batch inserts of IDENTITY entities, so provisioned
+ * users bypass the persistence context and go out as JDBC batches.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserBatchRepository {
+
+    private static final String INSERT_USER = "INSERT INTO users (fullname, username, password, "
+            + "account_non_expired, account_non_locked, credentials_non_expired, enabled, "
+            + "street, city, state, zip, phone_number, phone_type) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_ADDRESS =
+            "INSERT INTO user_addresses (user_id, street, city, state, zip) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PERMISSION =
+            "INSERT INTO user_permissions (user_id, permission_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Inserts the users with their password as given, so it must already be encoded.
+     */
+    public void insertAll(List<UserRequest> users) {
+        this.jdbcTemplate.batchUpdate(INSERT_USER, users, users.size(), (ps, user) -> {
+            ps.setString(1, user.getFullname());
+            ps.setString(2, user.getUsername());
+            ps.setString(3, user.getPassword());
+            setBoolean(ps, 4, user.getAccountNonExpired());
+            setBoolean(ps, 5, user.getAccountNonLocked());
+            setBoolean(ps, 6, user.getCredentialsNonExpired());
+            setBoolean(ps, 7, user.getEnabled());
+            var contactInfo = user.getContactInfo();
+            setAddress(ps, 8, contactInfo == null ? null : contactInfo.getHomeAddress());
+            var phone = contactInfo == null ? null : contactInfo.getHomePhone();
+            ps.setString(12, phone == null ? null : phone.getPhoneNumber());
+            ps.setString(13, phone == null ? null : phone.getPhoneType());
+        });
+    }
+
+    /**
+     * @param addresses pairs of user id and address
+     */
+    public void insertAddresses(List<Map.Entry<Long, AddressResponse>> addresses) {
+        this.jdbcTemplate.batchUpdate(INSERT_ADDRESS, addresses, addresses.size(), (ps, address) -> {
+            ps.setLong(1, address.getKey());
+            setAddress(ps, 2, address.getValue());
+        });
+    }
+
+    /**
+     * @param links pairs of {@code {userId, permissionId}}
+     */
+    public void insertPermissions(List<long[]> links) {
+        this.jdbcTemplate.batchUpdate(INSERT_PERMISSION, links, links.size(), (ps, link) -> {
+            ps.setLong(1, link[0]);
+            ps.setLong(2, link[1]);
+        });
+    }
+
+    public Map<String, Long> findIdsByUsername(Collection<String> usernames) {
+        var ids = new HashMap<String, Long>();
+        this.namedParameterJdbcTemplate.query("SELECT id, username FROM users WHERE username IN (:usernames)",
+                Map.of("usernames", usernames), rs -> {
+                    ids.put(rs.getString("username"), rs.getLong("id"));
+                });
+        return ids;
+    }
+
+    private static void setBoolean(PreparedStatement ps, int index, Boolean value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BOOLEAN);
+        } else {
+            ps.setBoolean(index, value);
+        }
+    }
+
+    /**
+     * Sets street, city, state and zip from {@code index} on.
+     */
+    private static void setAddress(PreparedStatement ps, int index, AddressResponse address) throws SQLException {
+        ps.setString(index, address == null ? null : address.getStreet());
+        ps.setString(index + 1, address == null ? null : address.getCity());
+        ps.setString(index + 2, address == null ? null : address.getState());
+        if (address == null || address.getZip() == null) {
+            ps.setNull(index + 3, Types.INTEGER);
+        } else {
+            ps.setInt(index + 3, address.getZip());
+        }
+    }
+}
@@ -1,11 +1,77 @@
 package br.com.contact.api.repository;
 
 import br.com.contact.api.entity.User;
+import br.com.contact.api.entity.model.export.UserExportRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String name);
+
+    /**
+     * A primary key probe for conditional reads, which answer unchanged users without loading them.
+     */
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.username = :username")
+    Optional<Integer> findTokenVersionByUsername(@Param("username") String username);
+
+    /**
+     * Page without the {@code count(*)} query of {@link #findAll(Pageable)}.
+     */
+    Slice<User> findAllBy(Pageable pageable);
+
+    // Keyset pagination: seeks on the (fullname, id) index, so every page costs the same as the first one. The
+    // fullname is nullable: users without one come after all others ascending and before them descending, ordered
+    // by id. Each query below stays a single seek, on the named users or on the unnamed ones; a page that crosses
+    // from one group to the other is completed with the query for the next group.
+
+    @Query(value = "SELECT * FROM users ORDER BY fullname NULLS LAST, id LIMIT :limit", nativeQuery = true)
+    List<User> findFirstOrderByFullnameAsc(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users WHERE (fullname, id) > (:fullname, :id) ORDER BY fullname, id LIMIT :limit",
+            nativeQuery = true)
+    List<User> findNextOrderByFullnameAsc(@Param("fullname") String fullname, @Param("id") Long id,
+                                          @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users WHERE fullname IS NULL AND id > :id ORDER BY id LIMIT :limit",
+            nativeQuery = true)
+    List<User> findNextNullFullnameAsc(@Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users ORDER BY fullname DESC NULLS FIRST, id DESC LIMIT :limit", nativeQuery = true)
+    List<User> findFirstOrderByFullnameDesc(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users WHERE (fullname, id) < (:fullname, :id) ORDER BY fullname DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<User> findNextOrderByFullnameDesc(@Param("fullname") String fullname, @Param("id") Long id,
+                                           @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users WHERE fullname IS NOT NULL ORDER BY fullname DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<User> findFirstNamedOrderByFullnameDesc(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM users WHERE fullname IS NULL AND id < :id ORDER BY id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<User> findNextNullFullnameDesc(@Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * Forward-only read for exports. It must be consumed inside a read-only transaction, so that PostgreSQL
+     * honours the fetch size instead of materializing the whole result.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new br.com.contact.api.entity.model.export.UserExportRow(u.id, u.fullname, u.username, "
+            + "u.accountNonExpired, u.accountNonLocked, u.credentialsNonExpired, u.enabled) FROM User u ORDER BY u.id")
+    Stream<UserExportRow> streamForExport();
 }
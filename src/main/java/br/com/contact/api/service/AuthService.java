@@ -2,37 +2,82 @@ package br.com.contact.api.service;
 
 import br.com.contact.api.config.security.jwt.JwtTokenProvider;
 import br.com.contact.api.entity.model.security.AccountCredentialsRequest;
+import br.com.contact.api.entity.model.security.UserSnapshot;
 import br.com.contact.api.entity.model.security.TokenResponse;
 import br.com.contact.api.service.exceptions.AuthorizationException;
+import br.com.contact.api.service.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.core.userdetails.UserDetailsChecker;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.function.Supplier;
+
 
 @Service
 @RequiredArgsConstructor
 public class AuthService {
-    private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider tokenProvider;
     private final UserService userService;
+    private final PasswordHashingService passwordHashingService;
+    private final RefreshTokenRevocationService revocationService;
+    private final MeterRegistry meterRegistry;
+    private final UserDetailsChecker accountStatusChecker = new AccountStatusUserDetailsChecker();
 
     public TokenResponse login(AccountCredentialsRequest request) {
         try {
             var username = request.getUsername();
             var password = request.getPassword();
-            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
-
-            var user = this.userService.findByUsername(username);
-            return tokenProvider.createAccessToken(username, user.getRoles());
+            var user = timed("lookup", () -> this.findUser(username));
+            // Only the comparison runs on the hashing pool. An unknown username is compared against a dummy hash,
+            // so the response time does not tell whether a username exists.
+            var matches = timed("hash", () -> this.passwordHashingService.matches(password,
+                    user != null ? user.getPassword() : null));
+            if (user == null || !matches) {
+                throw new AuthorizationException("Invalid username/password supplied!");
+            }
+            this.accountStatusChecker.check(user);
+            if (this.passwordHashingService.upgradeEncoding(user.getPassword())) {
+                timed("rehash", () -> this.userService.updatePassword(user, this.passwordHashingService.encode(password)));
+            }
+            return timed("token", () -> tokenProvider.createAccessToken(username, user.getRoles()));
+        } catch (ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new AuthorizationException("Invalid username/password supplied!");
         }
     }
 
+    /**
+     * Rotates the refresh token: the presented one is consumed and can never be used again.
+     */
     public TokenResponse refreshToken(String username, String refreshToken) {
-        this.userService.findByUsername(username);
+        var decodedJWT = tokenProvider.verifyRefreshToken(refreshToken);
+        if (!username.equals(decodedJWT.getSubject())) {
+            throw new AuthorizationException("Refresh token does not belong to the user!");
+        }
+        UserSnapshot user;
+        try {
+            user = this.userService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            throw new AuthorizationException("Refresh token does not belong to the user!");
+        }
+        this.revocationService.consume(decodedJWT.getId(), decodedJWT.getExpiresAtAsInstant());
+
+        return tokenProvider.createAccessToken(username, user.getRoles());
+    }
+
+    private UserSnapshot findUser(String username) {
+        try {
+            return this.userService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
 
-        return tokenProvider.refreshToken(refreshToken);
+    private <T> T timed(String stage, Supplier<T> supplier) {
+        return this.meterRegistry.timer("auth.login", "stage", stage).record(supplier);
     }
 }
@@ -0,0 +1,69 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.repository.CompanyRepository;
+import br.com.contact.api.util.BloomFilter;
+import br.com.contact.api.util.Cnpj;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.logging.Logger;
+
+/**
+ * Bloom filter over the registered CNPJs, as 14-digit numbers. A CNPJ it has never seen is free, so most
+ * creates skip the database probe; a positive answer must be confirmed against the table. Deleted companies
+ * stay in the filter until the next rebuild, which only costs a probe. CNPJs written by another instance are
+ * not seen until then either; the unique constraint on the column still rejects them.
+ */
+@Service
+@RequiredArgsConstructor
+public class CnpjRegistry {
+
+    private final Logger logger = Logger.getLogger(CnpjRegistry.class.getName());
+
+    @Value("${cache.cnpj.expectedEntries:1000000}")
+    private long expectedEntries;
+
+    @Value("${cache.cnpj.falsePositiveRate:0.01}")
+    private double falsePositiveRate;
+
+    private final CompanyRepository companyRepository;
+
+    private volatile BloomFilter cnpjs;
+
+    @PostConstruct
+    protected void init() {
+        this.rebuild();
+    }
+
+    /**
+     * @param cnpj a normalized CNPJ; anything else is reported as possibly registered
+     */
+    public boolean mightExist(String cnpj) {
+        var key = Cnpj.toLong(cnpj);
+        return key < 0 || this.cnpjs.mightContain(key);
+    }
+
+    public void register(String cnpj) {
+        var key = Cnpj.toLong(cnpj);
+        if (key >= 0) {
+            this.cnpjs.put(key);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.cnpj.rebuildInterval:PT6H}")
+    public void rebuild() {
+        var registered = this.companyRepository.findAllCnpjs();
+        var filter = BloomFilter.create(Math.max(expectedEntries, registered.size()), falsePositiveRate);
+        for (var cnpj : registered) {
+            var key = Cnpj.toLong(cnpj);
+            if (key >= 0) {
+                filter.put(key);
+            }
+        }
+        this.cnpjs = filter;
+        logger.info("Loaded %d CNPJs!".formatted(registered.size()));
+    }
+}
@@ -0,0 +1,172 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Evicts companies from {@link CacheConfig#COMPANIES} and {@link CacheConfig#COMPANIES_JSON}, on this instance and
+ * on every other one. Locally an entry
+ * is evicted at once, so the writer never reads it back stale, and again once the transaction commits, since a
+ * concurrent reader may have cached the old row in between. Other instances are told with a Postgres
+ * {@code NOTIFY}, which is itself only delivered on commit, and listen on a dedicated connection. On a database
+ * without {@code LISTEN/NOTIFY}, such as H2 in tests, only the local cache is evicted.
+ */
+@Service
+@RequiredArgsConstructor
+public class CompanyCacheInvalidator {
+
+    // NOTIFY payloads are limited to 8000 bytes; longer id lists clear the whole cache instead.
+    private static final int MAX_PAYLOAD = 7000;
+    private static final String ALL = "*";
+
+    private final Logger logger = Logger.getLogger(CompanyCacheInvalidator.class.getName());
+
+    private final CacheManager cacheManager;
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${cache.companies.notify.enabled:true}")
+    private boolean notifyEnabled;
+
+    @Value("${cache.companies.notify.channel:company_cache}")
+    private String channel;
+
+    @Value("${cache.companies.notify.pollTimeout:5s}")
+    private Duration pollTimeout;
+
+    private volatile boolean running;
+
+    private boolean notifying;
+
+    private Thread listener;
+
+    @PostConstruct
+    protected void init() throws SQLException {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("Invalid cache notify channel: " + channel);
+        }
+        try (var connection = dataSource.getConnection()) {
+            notifying = notifyEnabled && connection.isWrapperFor(PGConnection.class);
+        }
+        if (notifying) {
+            running = true;
+            listener = new Thread(this::listen, "company-cache-listener");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    public void evict(Long id) {
+        this.evict(List.of(id));
+    }
+
+    public void evict(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        this.evictLocal(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictLocal(ids);
+                }
+            });
+        }
+        if (notifying) {
+            var payload = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+            this.jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel,
+                    payload.length() > MAX_PAYLOAD ? ALL : payload);
+        }
+    }
+
+    private void evictLocal(Collection<Long> ids) {
+        for (var cache : this.caches()) {
+            ids.forEach(cache::evict);
+        }
+    }
+
+    private void clearLocal() {
+        this.caches().forEach(Cache::clear);
+    }
+
+    private List<Cache> caches() {
+        return List.of(this.cacheManager.getCache(CacheConfig.COMPANIES),
+                this.cacheManager.getCache(CacheConfig.COMPANIES_JSON));
+    }
+
+    /**
+     * Holds one connection listening on the channel for as long as the application runs. Notifications sent while
+     * it was disconnected are lost, so the whole cache is cleared each time it (re)connects.
+     */
+    private void listen() {
+        while (running) {
+            try (var connection = dataSource.getConnection()) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                this.clearLocal();
+                logger.info("Listening for company cache invalidations!");
+                var notifications = connection.unwrap(PGConnection.class);
+                while (running) {
+                    var received = notifications.getNotifications((int) pollTimeout.toMillis());
+                    if (received == null) {
+                        continue;
+                    }
+                    for (var notification : received) {
+                        this.received(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                logger.log(Level.WARNING, "Company cache listener failed, reconnecting!", e);
+                try {
+                    Thread.sleep(pollTimeout.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void received(String payload) {
+        if (ALL.equals(payload)) {
+            this.clearLocal();
+            return;
+        }
+        this.evictLocal(Arrays.stream(payload.split(",")).map(Long::valueOf).toList());
+    }
+}
@@ -0,0 +1,163 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.model.response.CompanyGraphResponse;
+import br.com.contact.api.entity.model.response.CompanyGraphSummaryResponse;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import br.com.contact.api.util.BranchGraph;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * In-memory copy of the branch links, for hierarchy questions answered without the database. Readers take the
+ * current {@link BranchGraph} snapshot and never lock. The changes of a transaction are collected in one
+ * {@link BranchGraph.Patch}, applied to a new snapshot that is swapped in once the transaction commits, so a
+ * rolled back change is never seen. Links written by another instance are picked up by the periodic rebuild.
+ */
+@Service
+@RequiredArgsConstructor
+public class CompanyGraphService {
+
+    private final Logger logger = Logger.getLogger(CompanyGraphService.class.getName());
+
+    private final CompanyBatchRepository companyBatchRepository;
+
+    private final Object rebuildLock = new Object();
+
+    private volatile BranchGraph graph = BranchGraph.empty();
+
+    // Patches committed while a rebuild reads the tables, replayed on what it read; guarded by this.
+    private List<BranchGraph.Patch> pending;
+
+    @PostConstruct
+    protected void init() {
+        this.rebuild();
+    }
+
+    public CompanyGraphResponse findById(Long id) {
+        return this.findById(id, null);
+    }
+
+    /**
+     * @param reaches another company, to also tell whether it sits anywhere below this one; may be {@code null}
+     */
+    public CompanyGraphResponse findById(Long id, Long reaches) {
+        logger.info("Finding company graph!");
+        var snapshot = this.graph;
+        if (!snapshot.contains(id)) {
+            throw new ObjectNotFoundException("Object Not Found! Id: %s Type %s"
+                    .formatted(id, Company.class.getSimpleName()));
+        }
+        return new CompanyGraphResponse(id, snapshot.depth(id), snapshot.branchesOf(id).length,
+                snapshot.subtreeSize(id), snapshot.ancestors(id).length,
+                reaches != null ? snapshot.reaches(id, reaches) : null);
+    }
+
+    public CompanyGraphSummaryResponse summary() {
+        logger.info("Finding company graph summary!");
+        var snapshot = this.graph;
+        return new CompanyGraphSummaryResponse(snapshot.size(), snapshot.links(),
+                Arrays.stream(snapshot.roots()).boxed().toList(), snapshot.hasCycle());
+    }
+
+    public void branchesChanged(Long companyId, long... branchIds) {
+        this.publish(patch -> patch.setBranches(companyId, branchIds));
+    }
+
+    public void removed(Long companyId) {
+        this.publish(patch -> patch.remove(companyId));
+    }
+
+    /**
+     * Bulk imports touch too many companies to patch one by one, so the graph is read again once they commit.
+     */
+    public void companiesImported() {
+        this.afterCommit(this::rebuild);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.companyGraph.rebuildInterval:PT1H}")
+    public void rebuild() {
+        synchronized (this.rebuildLock) {
+            synchronized (this) {
+                this.pending = new ArrayList<>();
+            }
+            BranchGraph loaded;
+            try {
+                loaded = this.companyBatchRepository.loadBranchGraph();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    this.pending = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                for (var patch : this.pending) {
+                    loaded = loaded.apply(patch);
+                }
+                this.pending = null;
+                this.graph = loaded;
+            }
+            logger.info("Loaded %d companies and %d branch links!".formatted(loaded.size(), loaded.links()));
+        }
+    }
+
+    /**
+     * Adds the change to the patch of the current transaction, which is applied once it commits; without a
+     * transaction the change is applied at once.
+     */
+    private void publish(Consumer<BranchGraph.Patch> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            var patch = BranchGraph.patch();
+            change.accept(patch);
+            this.apply(patch);
+            return;
+        }
+        var patch = (BranchGraph.Patch) TransactionSynchronizationManager.getResource(this);
+        if (patch == null) {
+            var created = BranchGraph.patch();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(CompanyGraphService.this);
+                    if (status == STATUS_COMMITTED) {
+                        apply(created);
+                    }
+                }
+            });
+            patch = created;
+        }
+        change.accept(patch);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private synchronized void apply(BranchGraph.Patch patch) {
+        this.graph = this.graph.apply(patch);
+        if (this.pending != null) {
+            this.pending.add(patch);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.model.response.CompanyHierarchyResponse;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.repository.CompanyHierarchyRepository;
+import br.com.contact.api.repository.CompanyRepository;
+import br.com.contact.api.service.exceptions.DataIntegrityViolationException;
+import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Reads and maintains {@code company_hierarchy}, the closure of {@code company_branches}. Reads are one indexed
+ * query each. A change to the branches of some companies only changes the descendants of those companies and of
+ * their ancestors, so only their rows are recomputed; a change to one company's branches narrows that down to the
+ * rows reaching the changed branches.
+ */
+@Service
+@RequiredArgsConstructor
+public class CompanyHierarchyService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final Logger logger = Logger.getLogger(CompanyHierarchyService.class.getName());
+
+    private final CompanyHierarchyRepository companyHierarchyRepository;
+
+    private final CompanyBatchRepository companyBatchRepository;
+
+    private final CompanyRepository companyRepository;
+
+    public List<CompanyHierarchyResponse> findChildren(Long id) {
+        logger.info("Finding company children!");
+        return this.orNotFound(id, this.companyHierarchyRepository.findDescendants(id, 1));
+    }
+
+    public List<CompanyHierarchyResponse> findDescendants(Long id) {
+        logger.info("Finding company descendants!");
+        return this.orNotFound(id, this.companyHierarchyRepository.findDescendants(id, Integer.MAX_VALUE));
+    }
+
+    public List<CompanyHierarchyResponse> findAncestors(Long id) {
+        logger.info("Finding company ancestors!");
+        return this.orNotFound(id, this.companyHierarchyRepository.findAncestors(id));
+    }
+
+    /**
+     * @return the companies that have the given one as a direct branch
+     */
+    public List<Long> findParentIds(Long id) {
+        return this.companyHierarchyRepository.findParentIds(id);
+    }
+
+    /**
+     * Rejects branches that would make the company its own branch, directly or through the branches below them.
+     * That is the case exactly when the company is one of the branch or already sits below it, which the closure
+     * answers with one indexed query however deep the hierarchy is.
+     */
+    public void verifyAcyclic(Long companyId, Collection<Long> branchIds) {
+        if (companyId == null || branchIds.isEmpty()) {
+            return;
+        }
+        var cycles = new ArrayList<Long>();
+        if (branchIds.contains(companyId)) {
+            cycles.add(companyId);
+        }
+        cycles.addAll(this.companyHierarchyRepository.findAncestorIdsAmong(companyId, branchIds));
+        if (!cycles.isEmpty()) {
+            throw new DataIntegrityViolationException("Company branches would create a cycle: %s".formatted(cycles));
+        }
+    }
+
+    /**
+     * Recomputes the hierarchy after the branches of the given companies changed. Pending entity changes must
+     * be flushed first, since the links are read with SQL.
+     */
+    @Transactional
+    public void refresh(Collection<Long> companyIds) {
+        if (companyIds.isEmpty()) {
+            return;
+        }
+        var affected = new LinkedHashSet<>(companyIds);
+        affected.addAll(this.chunked(companyIds, this.companyHierarchyRepository::findAncestorIds));
+
+        // Every company reachable from the affected ones: through unchanged links the current closure already
+        // knows them, through the changed links they are the new branches and the descendants of those.
+        var reachable = new HashSet<>(affected);
+        var branches = new HashSet<Long>();
+        this.chunked(companyIds, this.companyBatchRepository::findBranchLinks).forEach(link -> branches.add(link[1]));
+        reachable.addAll(branches);
+        reachable.addAll(this.chunked(affected, this.companyHierarchyRepository::findDescendantIds));
+        reachable.addAll(this.chunked(branches, this.companyHierarchyRepository::findDescendantIds));
+
+        var links = new HashMap<Long, List<Long>>();
+        this.chunked(reachable, this.companyBatchRepository::findBranchLinks)
+                .forEach(link -> links.computeIfAbsent(link[0], id -> new ArrayList<>()).add(link[1]));
+
+        var rows = new ArrayList<long[]>();
+        for (var ancestor : affected) {
+            depths(ancestor, links).forEach((descendant, depth) -> rows.add(new long[]{ancestor, descendant, depth}));
+        }
+        var ancestors = new ArrayList<>(affected);
+        for (int from = 0; from < ancestors.size(); from += CHUNK_SIZE) {
+            this.companyHierarchyRepository.deleteByAncestorIds(
+                    ancestors.subList(from, Math.min(from + CHUNK_SIZE, ancestors.size())));
+        }
+        for (int from = 0; from < rows.size(); from += CHUNK_SIZE) {
+            this.companyBatchRepository.insertHierarchy(rows.subList(from, Math.min(from + CHUNK_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * Updates the hierarchy after the branches of one company changed from {@code previous} to {@code current}.
+     * Only the rows from the company or one of its ancestors down to a changed branch or below it can change, so
+     * just those are deleted and written again. A company may be the branch of several, so each depth is the
+     * shortest over the links of the ancestors, added to the rows already kept for the companies they link to.
+     * Pending entity changes must be flushed first, since the links are read with SQL.
+     */
+    @Transactional
+    public void branchesChanged(Long companyId, Set<Long> previous, Set<Long> current) {
+        var changed = new HashSet<Long>();
+        previous.stream().filter(id -> !current.contains(id)).forEach(changed::add);
+        current.stream().filter(id -> !previous.contains(id)).forEach(changed::add);
+        if (changed.isEmpty()) {
+            return;
+        }
+        var ancestors = new LinkedHashSet<Long>();
+        ancestors.add(companyId);
+        ancestors.addAll(this.companyHierarchyRepository.findAncestorIds(List.of(companyId)));
+        var descendants = new HashSet<>(changed);
+        descendants.addAll(this.chunked(changed, this.companyHierarchyRepository::findDescendantIds));
+
+        var links = new HashMap<Long, List<Long>>();
+        this.chunked(ancestors, this.companyBatchRepository::findBranchLinks)
+                .forEach(link -> links.computeIfAbsent(link[0], id -> new ArrayList<>()).add(link[1]));
+
+        // Depths from the companies the ancestors link to, which are not ancestors themselves and so keep their rows.
+        var depths = new HashMap<Long, Map<Long, Integer>>();
+        var linked = new HashSet<Long>();
+        links.values().forEach(linked::addAll);
+        linked.removeAll(ancestors);
+        for (var branch : linked) {
+            var own = depths.computeIfAbsent(branch, id -> new HashMap<>());
+            if (descendants.contains(branch)) {
+                own.put(branch, 0);
+            }
+        }
+        for (var row : this.findHierarchy(linked, descendants)) {
+            depths.get(row[0]).put(row[1], (int) row[2]);
+        }
+
+        // Each ancestor once all its branches among the ancestors are done: the company first, its roots last.
+        var remaining = new HashMap<Long, Integer>();
+        var parents = new HashMap<Long, List<Long>>();
+        for (var ancestor : ancestors) {
+            for (var branch : links.getOrDefault(ancestor, List.of())) {
+                if (ancestors.contains(branch)) {
+                    remaining.merge(ancestor, 1, Integer::sum);
+                    parents.computeIfAbsent(branch, id -> new ArrayList<>()).add(ancestor);
+                }
+            }
+        }
+        var queue = new ArrayDeque<Long>();
+        ancestors.stream().filter(ancestor -> !remaining.containsKey(ancestor)).forEach(queue::add);
+        var rows = new ArrayList<long[]>();
+        while (!queue.isEmpty()) {
+            var ancestor = queue.poll();
+            var own = new HashMap<Long, Integer>();
+            for (var branch : links.getOrDefault(ancestor, List.of())) {
+                depths.getOrDefault(branch, Map.of())
+                        .forEach((descendant, depth) -> own.merge(descendant, depth + 1, Math::min));
+            }
+            depths.put(ancestor, own);
+            own.forEach((descendant, depth) -> rows.add(new long[]{ancestor, descendant, depth}));
+            for (var parent : parents.getOrDefault(ancestor, List.of())) {
+                if (remaining.merge(parent, -1, Integer::sum) == 0) {
+                    queue.add(parent);
+                }
+            }
+        }
+
+        for (var ancestorIds : chunks(ancestors)) {
+            for (var descendantIds : chunks(descendants)) {
+                this.companyHierarchyRepository.deleteByAncestorIdsAndDescendantIds(ancestorIds, descendantIds);
+            }
+        }
+        for (int from = 0; from < rows.size(); from += CHUNK_SIZE) {
+            this.companyBatchRepository.insertHierarchy(rows.subList(from, Math.min(from + CHUNK_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * Removes the company from the hierarchy, including the links that made it a branch of others. Must run
+     * before the company itself is deleted.
+     */
+    @Transactional
+    public void remove(Long companyId) {
+        var ancestors = this.companyHierarchyRepository.findAncestorIds(List.of(companyId));
+        this.companyBatchRepository.deleteBranchLinksTo(companyId);
+        this.companyHierarchyRepository.deleteByCompanyId(companyId);
+        this.refresh(ancestors);
+    }
+
+    /**
+     * Shortest distance from {@code ancestor} to each company below it, breadth first so the first visit is the
+     * shortest; visited companies are skipped, so a cycle in the links cannot loop.
+     */
+    private static Map<Long, Integer> depths(Long ancestor, Map<Long, List<Long>> links) {
+        var depths = new HashMap<Long, Integer>();
+        var queue = new ArrayDeque<Long>();
+        queue.add(ancestor);
+        var visited = new HashSet<Long>();
+        visited.add(ancestor);
+        while (!queue.isEmpty()) {
+            var company = queue.poll();
+            var depth = depths.getOrDefault(company, 0) + 1;
+            for (var branch : links.getOrDefault(company, List.of())) {
+                if (visited.add(branch)) {
+                    depths.put(branch, depth);
+                    queue.add(branch);
+                }
+            }
+        }
+        return depths;
+    }
+
+    private <T> List<T> chunked(Collection<Long> ids, Function<List<Long>, List<T>> query) {
+        var result = new ArrayList<T>();
+        for (var chunk : chunks(ids)) {
+            result.addAll(query.apply(chunk));
+        }
+        return result;
+    }
+
+    private List<long[]> findHierarchy(Collection<Long> ancestorIds, Collection<Long> descendantIds) {
+        var rows = new ArrayList<long[]>();
+        for (var descendants : chunks(descendantIds)) {
+            rows.addAll(this.chunked(ancestorIds,
+                    ancestors -> this.companyBatchRepository.findHierarchy(ancestors, descendants)));
+        }
+        return rows;
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> ids) {
+        var all = new ArrayList<>(ids);
+        var chunks = new ArrayList<List<Long>>();
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            chunks.add(all.subList(from, Math.min(from + CHUNK_SIZE, all.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * An empty result is only an error when the company does not exist, which costs a second query just then.
+     */
+    private List<CompanyHierarchyResponse> orNotFound(Long id, List<CompanyHierarchyResponse> companies) {
+        if (companies.isEmpty() && !this.companyRepository.existsById(id)) {
+            throw new ObjectNotFoundException("Object Not Found! Id: %s Type %s"
+                    .formatted(id, Company.class.getSimpleName()));
+        }
+        return companies;
+    }
+}
@@ -0,0 +1,298 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.entity.model.request.CompanyImportRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyImportResponse;
+import br.com.contact.api.entity.model.response.ImportErrorResponse;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.service.exceptions.BadRequestException;
+import br.com.contact.api.util.Cnpj;
+import br.com.contact.api.util.CsvReader;
+import br.com.contact.api.util.JsonRows;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk company import. Rows are read from the request body as they arrive and written in chunks: each chunk is
+ * validated in memory, checked against the existing CNPJs with one query and inserted as one JDBC batch. The
+ * inserted CNPJs are added to the {@link CnpjRegistry}. Branch links are resolved by CNPJ in a second pass, once
+ * every row of the import exists, and the hierarchy is refreshed once for all of them. Rejected rows are reported
+ * and skipped, the rest is imported.
+ */
+@Service
+@RequiredArgsConstructor
+public class CompanyImportService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String BRANCH_SEPARATOR = ";";
+
+    private final Logger logger = Logger.getLogger(CompanyImportService.class.getName());
+
+    private final CompanyBatchRepository companyBatchRepository;
+
+    private final CnpjRegistry cnpjRegistry;
+
+    private final CompanyHierarchyService companyHierarchyService;
+
+    private final CompanyGraphService companyGraphService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    /**
+     * Reads a JSON array of companies, or one company per line (NDJSON).
+     */
+    @Transactional
+    public CompanyImportResponse importJson(InputStream in) throws IOException {
+        logger.info("Importing companies from JSON!");
+        return this.importRows(new JsonRows<>(this.objectMapper.readerFor(CompanyImportRequest.class).readValues(in)));
+    }
+
+    /**
+     * Reads a CSV file whose header names the columns: {@code name} and {@code cnpj} are required, {@code street},
+     * {@code city}, {@code state}, {@code zip} and {@code branches} (CNPJs separated by {@code ;}) are optional
+     * and unknown columns, such as the {@code id} of an export, are ignored.
+     */
+    @Transactional
+    public CompanyImportResponse importCsv(InputStream in) {
+        logger.info("Importing companies from CSV!");
+        var records = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        if (!records.hasNext()) {
+            throw new BadRequestException("The CSV header is required.");
+        }
+        var columns = new HashMap<String, Integer>();
+        var header = records.next();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("cnpj")) {
+            throw new BadRequestException("The CSV header must contain name and cnpj.");
+        }
+        return this.importRows(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
+
+            @Override
+            public CompanyImportRequest next() {
+                return toRequest(records.next(), columns);
+            }
+        });
+    }
+
+    private CompanyImportResponse importRows(Iterator<CompanyImportRequest> rows) {
+        var response = new CompanyImportResponse();
+        var seen = new HashSet<String>();
+        var chunk = new ArrayList<ImportRow>(CHUNK_SIZE);
+        var links = new ArrayList<ImportRow>();
+        long number = 0;
+        try {
+            while (rows.hasNext()) {
+                number++;
+                var row = this.readRow(rows, number, response);
+                if (row == null) {
+                    continue;
+                }
+                if (!seen.add(row.cnpj())) {
+                    response.getErrors().add(new ImportErrorResponse(number, row.cnpj(), "CNPJ already exist."));
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    this.insertChunk(chunk, links, response);
+                }
+            }
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            throw new BadRequestException("Malformed import body.");
+        }
+        this.insertChunk(chunk, links, response);
+        this.linkBranches(links, response);
+        if (response.getImported() > 0) {
+            this.companyGraphService.companiesImported();
+        }
+        response.getErrors().sort(Comparator.comparingLong(ImportErrorResponse::getRow));
+        logger.info("Imported %d companies with %d errors!".formatted(response.getImported(),
+                response.getErrors().size()));
+        return response;
+    }
+
+    /**
+     * The next valid row, or {@code null} after recording why it was rejected.
+     */
+    private ImportRow readRow(Iterator<CompanyImportRequest> rows, long number, CompanyImportResponse response) {
+        CompanyImportRequest request;
+        try {
+            request = rows.next();
+        } catch (IllegalArgumentException e) {
+            response.getErrors().add(new ImportErrorResponse(number, null, e.getMessage()));
+            return null;
+        }
+        var violations = this.validator.validate(request);
+        if (!violations.isEmpty()) {
+            var message = violations.stream().map(ConstraintViolation::getMessage).sorted()
+                    .collect(Collectors.joining(" "));
+            response.getErrors().add(new ImportErrorResponse(number, request.getCnpj(), message));
+            return null;
+        }
+        request.setCnpj(Cnpj.normalize(request.getCnpj()));
+        var branches = request.getBranches() == null ? Set.<String>of() : request.getBranches().stream()
+                .map(Cnpj::normalize).collect(Collectors.toCollection(LinkedHashSet::new));
+        if (branches.contains(request.getCnpj())) {
+            response.getErrors().add(new ImportErrorResponse(number, request.getCnpj(),
+                    "A company cannot be its own branch."));
+            return null;
+        }
+        return new ImportRow(number, request, branches);
+    }
+
+    private void insertChunk(List<ImportRow> chunk, List<ImportRow> links, CompanyImportResponse response) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        var existing = this.companyBatchRepository.findIdsByCnpj(chunk.stream().map(ImportRow::cnpj).toList());
+        var inserts = new ArrayList<CompanyImportRequest>(chunk.size());
+        for (var row : chunk) {
+            if (existing.containsKey(row.cnpj())) {
+                response.getErrors().add(new ImportErrorResponse(row.number(), row.cnpj(), "CNPJ already exist."));
+                continue;
+            }
+            inserts.add(row.request());
+            if (!row.branches().isEmpty()) {
+                links.add(row);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            this.companyBatchRepository.insertAll(inserts);
+            inserts.forEach(company -> this.cnpjRegistry.register(company.getCnpj()));
+        }
+        response.setImported(response.getImported() + inserts.size());
+        chunk.clear();
+    }
+
+    private void linkBranches(List<ImportRow> links, CompanyImportResponse response) {
+        var ids = new HashMap<String, Long>();
+        var pending = new LinkedHashSet<String>();
+        for (var row : links) {
+            pending.add(row.cnpj());
+            pending.addAll(row.branches());
+        }
+        var cnpjs = new ArrayList<>(pending);
+        for (int from = 0; from < cnpjs.size(); from += CHUNK_SIZE) {
+            ids.putAll(this.companyBatchRepository.findIdsByCnpj(
+                    cnpjs.subList(from, Math.min(from + CHUNK_SIZE, cnpjs.size()))));
+        }
+
+        var batch = new ArrayList<long[]>(CHUNK_SIZE);
+        var linked = new LinkedHashSet<Long>();
+        var accepted = new HashMap<Long, List<Long>>();
+        for (var row : links) {
+            var companyId = ids.get(row.cnpj());
+            for (var branch : row.branches()) {
+                var branchId = ids.get(branch);
+                if (branchId == null) {
+                    response.getErrors().add(new ImportErrorResponse(row.number(), row.cnpj(),
+                            "Company branch not found: %s".formatted(branch)));
+                    continue;
+                }
+                if (reaches(accepted, branchId, companyId)) {
+                    response.getErrors().add(new ImportErrorResponse(row.number(), row.cnpj(),
+                            "Company branches would create a cycle: %s".formatted(branch)));
+                    continue;
+                }
+                accepted.computeIfAbsent(companyId, id -> new ArrayList<>()).add(branchId);
+                batch.add(new long[]{companyId, branchId});
+                linked.add(companyId);
+                if (batch.size() == CHUNK_SIZE) {
+                    this.companyBatchRepository.insertBranches(batch);
+                    response.setLinked(response.getLinked() + batch.size());
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            this.companyBatchRepository.insertBranches(batch);
+            response.setLinked(response.getLinked() + batch.size());
+        }
+        this.companyHierarchyService.refresh(linked);
+    }
+
+    /**
+     * Whether {@code to} is below {@code from} through the links imported so far. Imported companies are new, so
+     * no company already in the table can lead back to them and these links are the only way to close a cycle.
+     */
+    private static boolean reaches(Map<Long, List<Long>> links, Long from, Long to) {
+        var visited = new HashSet<Long>();
+        var stack = new ArrayDeque<Long>();
+        stack.push(from);
+        while (!stack.isEmpty()) {
+            var company = stack.pop();
+            if (company.equals(to)) {
+                return true;
+            }
+            if (visited.add(company)) {
+                links.getOrDefault(company, List.of()).forEach(stack::push);
+            }
+        }
+        return false;
+    }
+
+    private static CompanyImportRequest toRequest(List<String> record, Map<String, Integer> columns) {
+        Function<String, String> value = column -> {
+            var index = columns.get(column);
+            if (index == null || index >= record.size() || record.get(index).isBlank()) {
+                return null;
+            }
+            return record.get(index).trim();
+        };
+        Integer zip = null;
+        if (value.apply("zip") != null) {
+            try {
+                zip = Integer.valueOf(value.apply("zip"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid zip: %s".formatted(value.apply("zip")));
+            }
+        }
+        var address = value.apply("street") == null && value.apply("city") == null && value.apply("state") == null
+                && zip == null ? null
+                : new AddressResponse(value.apply("street"), value.apply("city"), value.apply("state"), zip);
+        var branches = value.apply("branches") == null ? new LinkedHashSet<String>()
+                : Arrays.stream(value.apply("branches").split(BRANCH_SEPARATOR)).map(String::trim)
+                .filter(branch -> !branch.isEmpty()).collect(Collectors.toCollection(LinkedHashSet::new));
+        return new CompanyImportRequest(value.apply("name"), value.apply("cnpj"), address, branches);
+    }
+
+    private record ImportRow(long number, CompanyImportRequest request, Set<String> branches) {
+
+        String cnpj() {
+            return this.request.getCnpj();
+        }
+    }
+}
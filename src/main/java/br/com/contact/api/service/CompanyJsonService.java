@@ -0,0 +1,79 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Company responses in the default shape, already serialized, so a read that hits the cache skips mapping and
+ * Jackson altogether and the controller writes the bytes as they are. A miss serializes the cached response of
+ * {@link CompanyService#findVersionedById}, so concurrent misses share one load. Entries are dropped together
+ * with the {@link CacheConfig#COMPANIES} ones by {@link CompanyCacheInvalidator}, and the next read writes them
+ * again.
+ * <p>
+ * The body and the version come from the same row, so the ETag written with the bytes always names them.
+ */
+@Service
+@RequiredArgsConstructor
+public class CompanyJsonService {
+
+    private final Logger logger = Logger.getLogger(CompanyJsonService.class.getName());
+
+    private final CompanyService companyService;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${cache.companies.json.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.companies.json.gzipMinSize:1KB}")
+    private DataSize gzipMinSize;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Cacheable(cacheNames = CacheConfig.COMPANIES_JSON, key = "#id", sync = true)
+    public CompanyJson findById(Long id) {
+        logger.info("Serializing one company!");
+        var company = this.companyService.findVersionedById(id, ResponseShape.DEFAULT);
+        try {
+            var json = this.objectMapper.writeValueAsBytes(company.value());
+            return new CompanyJson(company.version(), json, json.length >= gzipMinSize.toBytes() ? gzip(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        var out = new ByteArrayOutputStream(json.length / 4);
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The UTF-8 JSON of a company, its version and its gzip encoding, which is {@code null} for bodies too small to
+     * be worth it.
+     */
+    public record CompanyJson(long version, byte[] json, byte[] gzip) {
+
+        public int size() {
+            return this.json.length + (this.gzip == null ? 0 : this.gzip.length);
+        }
+    }
+}
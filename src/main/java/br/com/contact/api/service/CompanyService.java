@@ -1,18 +1,33 @@
 package br.com.contact.api.service;
 
+import br.com.contact.api.config.CacheConfig;
 import br.com.contact.api.entity.Company;
 import br.com.contact.api.entity.model.request.CompanyRequest;
 import br.com.contact.api.entity.model.response.CompanyResponse;
-import br.com.contact.api.mapper.ModelMapperConfig;
+import br.com.contact.api.entity.model.response.CursorPageResponse;
+import br.com.contact.api.mapper.CompanyMapper;
 import br.com.contact.api.repository.CompanyRepository;
+import br.com.contact.api.service.exceptions.BadRequestException;
 import br.com.contact.api.service.exceptions.DataIntegrityViolationException;
 import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import br.com.contact.api.service.exceptions.PreconditionFailedException;
+import br.com.contact.api.util.Cnpj;
+import br.com.contact.api.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -24,100 +39,320 @@ public class CompanyService {
 
     private final CompanyRepository companyRepository;
 
+    private final CnpjRegistry cnpjRegistry;
+
+    private final CompanyHierarchyService companyHierarchyService;
+
+    private final CompanyGraphService companyGraphService;
+
+    private final CompanyCacheInvalidator companyCacheInvalidator;
+
+    private final SingleFlightService singleFlightService;
 
     public List<CompanyResponse> findAll() {
+        return this.findAll(ResponseShape.DEFAULT);
+    }
+
+    public List<CompanyResponse> findAll(ResponseShape shape) {
         logger.info("Finding all companies!");
-        return this.companyRepository.findAll()
-                .stream()
-                .map(company -> ModelMapperConfig.parseObject(company, CompanyResponse.class))
+        var depth = shape.branchDepth();
+        var companies = depth == 0
+                ? this.companyRepository.findAllWithoutBranches()
+                : this.companyRepository.findAll();
+        return companies.stream()
+                .map(company -> CompanyMapper.INSTANCE.toResponse(company, depth))
                 .toList();
     }
 
     public Page<CompanyResponse> findAllPageable(PageRequest pageable) {
+        return this.findAllPageable(pageable, ResponseShape.DEFAULT);
+    }
+
+    public Page<CompanyResponse> findAllPageable(PageRequest pageable, ResponseShape shape) {
         logger.info("Finding all companies pageable!");
-        var companyPage = this.companyRepository.findAll(pageable);
-        return companyPage.map(company -> ModelMapperConfig.parseObject(companyPage, CompanyResponse.class));
+        var depth = shape.branchDepth();
+        return this.companyRepository.findAll(pageable)
+                .map(company -> CompanyMapper.INSTANCE.toResponse(company, depth));
+    }
+
+    public Slice<CompanyResponse> findAllSlice(PageRequest pageable) {
+        return this.findAllSlice(pageable, ResponseShape.DEFAULT);
+    }
+
+    public Slice<CompanyResponse> findAllSlice(PageRequest pageable, ResponseShape shape) {
+        logger.info("Finding all companies slice!");
+        var depth = shape.branchDepth();
+        return this.companyRepository.findAllBy(pageable)
+                .map(company -> CompanyMapper.INSTANCE.toResponse(company, depth));
+    }
+
+    public CursorPageResponse<CompanyResponse> findAllByCursor(String cursor, int size, boolean descending) {
+        return this.findAllByCursor(cursor, size, descending, ResponseShape.DEFAULT);
+    }
+
+    public CursorPageResponse<CompanyResponse> findAllByCursor(String cursor, int size, boolean descending,
+                                                               ResponseShape shape) {
+        logger.info("Finding all companies by cursor!");
+        var limit = size + 1;
+        List<Company> companies;
+        if (cursor == null || cursor.isBlank()) {
+            companies = descending
+                    ? this.companyRepository.findFirstOrderByNameDesc(limit)
+                    : this.companyRepository.findFirstOrderByNameAsc(limit);
+        } else {
+            var after = this.decodeCursor(cursor);
+            descending = after.descending();
+            companies = descending
+                    ? this.companyRepository.findNextOrderByNameDesc(after.key(), after.id(), limit)
+                    : this.companyRepository.findNextOrderByNameAsc(after.key(), after.id(), limit);
+        }
+        var depth = shape.branchDepth();
+        return KeysetCursor.page(companies, size, descending, Company::getName, Company::getId,
+                company -> CompanyMapper.INSTANCE.toResponse(company, depth));
     }
 
     public List<CompanyResponse> findAllDistinctId() {
+        return this.findAllDistinctId(ResponseShape.DEFAULT);
+    }
+
+    public List<CompanyResponse> findAllDistinctId(ResponseShape shape) {
         logger.info("Finding all companies distinct!");
-        return this.companyRepository.findAllDistinctCompaniesWithBranches()
-                .stream()
-                .map(company -> ModelMapperConfig.parseObject(company, CompanyResponse.class))
+        var depth = shape.branchDepth();
+        var companies = depth == 0
+                ? this.companyRepository.findAllDistinctCompaniesWithoutBranches()
+                : this.companyRepository.findAllDistinctCompaniesWithBranches();
+        return companies.stream()
+                .map(company -> CompanyMapper.INSTANCE.toResponse(company, depth))
                 .toList();
     }
 
     public CompanyResponse findById(Long id) {
-        logger.info("Finding one company!");
-        var companyResponse = this.companyRepository.findById(id)
-                .orElseThrow(() -> new ObjectNotFoundException("Object Not Found! Id: %s Type %s"
-                        .formatted(id, Company.class.getSimpleName())));
+        return this.findById(id, ResponseShape.DEFAULT);
+    }
 
-        return ModelMapperConfig.parseObject(companyResponse, CompanyResponse.class);
+    public CompanyResponse findById(Long id, ResponseShape shape) {
+        return this.findVersionedById(id, shape).value();
     }
 
+    /**
+     * The company together with the version it was read at, both from the same row. Responses in the default
+     * shape are cached with their version, and concurrent misses for one company load it only once; reads in
+     * other shapes are coalesced the same way by {@link SingleFlightService}.
+     * Changes to the company, or to a company it has as branch, evict it through {@link CompanyCacheInvalidator}.
+     */
+    @Cacheable(cacheNames = CacheConfig.COMPANIES, key = "#id", condition = "#shape.branchDepth() == 1", sync = true)
+    public Versioned<CompanyResponse> findVersionedById(Long id, ResponseShape shape) {
+        var depth = shape.branchDepth();
+        return this.singleFlightService.load("companies", List.of(id, depth), () -> {
+            logger.info("Finding one company!");
+            var company = depth == 0
+                    ? this.companyRepository.findWithoutBranchesById(id).orElseThrow(() -> this.notFound(id))
+                    : this.findEntityById(id);
+            return new Versioned<>(company.getVersion(), CompanyMapper.INSTANCE.toResponse(company, depth));
+        });
+    }
 
+    /**
+     * The current version, read with a primary key probe so conditional reads of an unchanged company skip
+     * loading it.
+     */
+    public long findVersion(Long id) {
+        return this.companyRepository.findVersionById(id).orElseThrow(() -> this.notFound(id));
+    }
+
+    @Transactional
     public CompanyResponse create(CompanyRequest companyRequest) {
+        return this.createVersioned(companyRequest).value();
+    }
+
+    @Transactional
+    public Versioned<CompanyResponse> createVersioned(CompanyRequest companyRequest) {
         logger.info("Creating one company!");
-        var companyResponse = ModelMapperConfig.parseObject(companyRequest, CompanyResponse.class);
-        this.verifyCnpjExists(companyResponse.getCnpj());
-        this.verifyForeignKey(companyResponse);
-        companyResponse.setCompanyBranches(companyResponse.getCompanyBranches());
-        var companySaved = this.companyRepository.save(ModelMapperConfig.parseObject(companyResponse, Company.class));
-        return ModelMapperConfig.parseObject(companySaved, CompanyResponse.class);
+        companyRequest.setCnpj(Cnpj.normalize(companyRequest.getCnpj()));
+        this.verifyCnpjExists(companyRequest.getCnpj());
+        var company = CompanyMapper.INSTANCE.toEntity(companyRequest);
+        company.setCompanyBranches(this.findCompanyBranches(null, this.branchIds(companyRequest)));
+        var saved = this.save(company, null);
+        this.companyCacheInvalidator.evict(saved.getId());
+        return new Versioned<>(saved.getVersion(), CompanyMapper.INSTANCE.toResponse(saved));
     }
 
+    @Transactional
     public CompanyResponse update(Long id, CompanyRequest companyRequest) {
+        return this.update(id, companyRequest, null).value();
+    }
+
+    /**
+     * @param expectedVersions the versions the client last read, from {@code If-Match}; {@code null} accepts any.
+     *                         A change committed between this check and the write is still caught by the version
+     *                         column and reported as a conflict.
+     * @return the company with the version it was written at
+     */
+    @Transactional
+    public Versioned<CompanyResponse> update(Long id, CompanyRequest companyRequest,
+                                             Collection<Long> expectedVersions) {
         logger.info("Updating one company!");
-        var companyResponse = this.findById(id);
-        var companyData = ModelMapperConfig.parseObject(companyRequest, CompanyResponse.class);
+        var company = this.findEntityById(id);
+        if (expectedVersions != null && !expectedVersions.contains(company.getVersion())) {
+            throw new PreconditionFailedException("Company %s was changed, its version is %d."
+                    .formatted(id, company.getVersion()));
+        }
+        companyRequest.setCnpj(Cnpj.normalize(companyRequest.getCnpj()));
+        this.verifyCnpjUpdate(company, companyRequest);
 
-        this.updateData(companyResponse, companyData);
+        var previousBranchIds = branchIds(company);
+        var branchIds = this.branchIds(companyRequest);
+        CompanyMapper.INSTANCE.update(companyRequest, company);
+        if (!branchIds.equals(previousBranchIds)) {
+            company.setCompanyBranches(this.findCompanyBranches(company.getId(), branchIds));
+        }
 
-        this.verifyCnpjUpdate(companyResponse, companyData);
-        this.verifyForeignKey(companyResponse);
-        companyResponse.setCompanyBranches(companyResponse.getCompanyBranches());
+        var saved = this.save(company, previousBranchIds);
+        var response = new Versioned<>(saved.getVersion(), CompanyMapper.INSTANCE.toResponse(saved));
+        var parents = this.companyHierarchyService.findParentIds(saved.getId());
+        this.incrementVersions(parents);
+        this.companyCacheInvalidator.evict(this.withParents(saved.getId(), parents));
+        return response;
+    }
 
-        var company = this.companyRepository.save(ModelMapperConfig.parseObject(companyResponse, Company.class));
-        return ModelMapperConfig.parseObject(company, CompanyResponse.class);
+    @Transactional
+    public void delete(Long id) {
+        logger.info("Deleting one company!");
+        var company = this.findEntityById(id);
+        var parents = this.companyHierarchyService.findParentIds(company.getId());
+        this.companyHierarchyService.remove(company.getId());
+        this.companyRepository.deleteById(company.getId());
+        this.companyGraphService.removed(company.getId());
+        this.incrementVersions(parents);
+        this.companyCacheInvalidator.evict(this.withParents(company.getId(), parents));
     }
 
-    private void updateData(CompanyResponse response, CompanyResponse request) {
-        response.setName(request.getName());
-        response.setCnpj(request.getCnpj());
-        response.setAddress(request.getAddress());
-        response.setCompanyBranches(request.getCompanyBranches());
+    /**
+     * The company and those that embed it in their cached response as one of their branches.
+     */
+    private List<Long> withParents(Long id, List<Long> parents) {
+        var ids = new ArrayList<Long>();
+        ids.add(id);
+        ids.addAll(parents);
+        return ids;
     }
 
-    public void delete(Long id) {
-        logger.info("Deleting one company!");
-        var companyResponse = this.findById(id);
-        this.companyRepository.deleteById(companyResponse.getId());
+    /**
+     * Parents show the company among their branches, so their ETags must change with it. The bulk update leaves
+     * the persistence context behind and clears it, hence it runs last.
+     */
+    private void incrementVersions(List<Long> parents) {
+        if (!parents.isEmpty()) {
+            this.companyRepository.incrementVersions(parents);
+        }
+    }
+
+    private Company findEntityById(Long id) {
+        return this.companyRepository.findById(id).orElseThrow(() -> this.notFound(id));
+    }
+
+    private ObjectNotFoundException notFound(Long id) {
+        return new ObjectNotFoundException("Object Not Found! Id: %s Type %s"
+                .formatted(id, Company.class.getSimpleName()));
+    }
+
+    private KeysetCursor decodeCursor(String cursor) {
+        try {
+            return KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor.");
+        }
     }
 
     private void verifyCnpjExists(String cnpj) {
-        this.companyRepository.findByCnpj(cnpj).ifPresent(company -> {
+        if (this.cnpjRegistry.mightExist(cnpj) && this.companyRepository.existsByCnpj(cnpj)) {
             throw new DataIntegrityViolationException("CNPJ already exist.");
-        });
+        }
     }
 
-    private void verifyCnpjUpdate(CompanyResponse request, CompanyResponse response) {
-        this.companyRepository.findByCnpj(response.getCnpj()).ifPresent(cnpjVerify -> {
-            if (!cnpjVerify.getCnpj().equals(request.getCnpj())) {
+    /**
+     * Runs before the request is copied onto the company, so an unchanged CNPJ needs no check at all.
+     */
+    private void verifyCnpjUpdate(Company company, CompanyRequest companyRequest) {
+        var cnpj = companyRequest.getCnpj();
+        if (!cnpj.equals(company.getCnpj()) && this.cnpjRegistry.mightExist(cnpj)
+                && this.companyRepository.existsByCnpjAndIdNot(cnpj, company.getId())) {
+            throw new DataIntegrityViolationException("CNPJ already exist.");
+        }
+    }
+
+    /**
+     * Saves, registers the CNPJ and, when the branches changed, updates the hierarchy and the graph. A CNPJ the
+     * registry had not seen yet (written by another instance, or concurrently) still hits the unique constraint,
+     * which is reported like the checks above.
+     *
+     * @param previousBranchIds the branches before the change, {@code null} when the company is being created
+     */
+    private Company save(Company company, Set<Long> previousBranchIds) {
+        Company saved;
+        try {
+            saved = this.companyRepository.save(company);
+            this.companyRepository.flush();
+        } catch (org.springframework.dao.DataIntegrityViolationException e) {
+            var cause = e.getMostSpecificCause().getMessage();
+            if (cause != null && cause.toLowerCase(Locale.ROOT).contains("cnpj")) {
                 throw new DataIntegrityViolationException("CNPJ already exist.");
             }
-        });
+            throw e;
+        }
+        this.cnpjRegistry.register(saved.getCnpj());
+        var branchIds = branchIds(saved);
+        if (previousBranchIds == null || !branchIds.equals(previousBranchIds)) {
+            this.companyHierarchyService.branchesChanged(saved.getId(),
+                    previousBranchIds == null ? Set.of() : previousBranchIds, branchIds);
+            this.companyGraphService.branchesChanged(saved.getId(),
+                    branchIds.stream().mapToLong(Long::longValue).toArray());
+        }
+        return saved;
     }
 
-    private void verifyForeignKey(CompanyResponse companyResponse) {
-        var companyBranches = companyResponse.getCompanyBranches();
-        if (!companyBranches.isEmpty()) {
-            var setCompanyBranches = companyBranches.stream()
-                    .map(companyBranch -> this.findById(companyBranch.getId()))
-                    .collect(Collectors.toSet());
-            companyResponse.setCompanyBranches(setCompanyBranches);
-        }
+    private static Set<Long> branchIds(Company company) {
+        return company.getCompanyBranches().stream()
+                .map(Company::getId)
+                .collect(Collectors.toSet());
     }
 
+    /**
+     * @return the ids of the requested branches, in the order they were given
+     */
+    private Set<Long> branchIds(CompanyRequest companyRequest) {
+        var companyBranches = companyRequest.getCompanyBranches();
+        if (companyBranches == null || companyBranches.isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+        if (companyBranches.stream().anyMatch(companyBranch -> companyBranch.getId() == null)) {
+            throw new BadRequestException("Company branch id is required.");
+        }
+        return companyBranches.stream()
+                .map(CompanyResponse::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
 
+    /**
+     * Checks that every branch exists with a single {@code id IN (...)} query and attaches them as references,
+     * without loading them. Branches that would put the company below itself are rejected.
+     *
+     * @param companyId the company the branches are for, {@code null} when it is being created and so cannot be
+     *                  below any of them
+     */
+    private Set<Company> findCompanyBranches(Long companyId, Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        var missing = new LinkedHashSet<>(ids);
+        this.companyRepository.findExistingIds(ids).forEach(missing::remove);
+        if (!missing.isEmpty()) {
+            throw new ObjectNotFoundException("Object Not Found! Ids: %s Type %s"
+                    .formatted(missing, Company.class.getSimpleName()));
+        }
+        this.companyHierarchyService.verifyAcyclic(companyId, ids);
+        return ids.stream()
+                .map(this.companyRepository::getReferenceById)
+                .collect(Collectors.toSet());
+    }
 }
@@ -0,0 +1,162 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.entity.model.export.CompanyExportRow;
+import br.com.contact.api.entity.model.export.UserExportRow;
+import br.com.contact.api.repository.CompanyRepository;
+import br.com.contact.api.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Streams whole tables to the client one row at a time: rows come from a forward-only cursor as unmanaged
+ * projections and are written straight to the response, so memory use does not depend on the table size.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private static final List<Column<CompanyExportRow>> COMPANY_COLUMNS = List.of(
+            new Column<>("id", CompanyExportRow::id),
+            new Column<>("name", CompanyExportRow::name),
+            new Column<>("cnpj", CompanyExportRow::cnpj),
+            new Column<>("street", CompanyExportRow::street),
+            new Column<>("city", CompanyExportRow::city),
+            new Column<>("state", CompanyExportRow::state),
+            new Column<>("zip", CompanyExportRow::zip));
+
+    private static final List<Column<UserExportRow>> USER_COLUMNS = List.of(
+            new Column<>("id", UserExportRow::id),
+            new Column<>("fullname", UserExportRow::fullname),
+            new Column<>("username", UserExportRow::username),
+            new Column<>("accountNonExpired", UserExportRow::accountNonExpired),
+            new Column<>("accountNonLocked", UserExportRow::accountNonLocked),
+            new Column<>("credentialsNonExpired", UserExportRow::credentialsNonExpired),
+            new Column<>("enabled", UserExportRow::enabled));
+
+    private final Logger logger = Logger.getLogger(ExportService.class.getName());
+
+    private final CompanyRepository companyRepository;
+
+    private final UserRepository userRepository;
+
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public long exportCompanies(ExportFormat format, OutputStream out) throws IOException {
+        logger.info("Exporting companies as %s!".formatted(format));
+        try (var rows = this.companyRepository.streamForExport()) {
+            return this.write(format, rows, COMPANY_COLUMNS, out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportUsers(ExportFormat format, OutputStream out) throws IOException {
+        logger.info("Exporting users as %s!".formatted(format));
+        try (var rows = this.userRepository.streamForExport()) {
+            return this.write(format, rows, USER_COLUMNS, out);
+        }
+    }
+
+    private <T> long write(ExportFormat format, Stream<T> rows, List<Column<T>> columns, OutputStream out)
+            throws IOException {
+        var iterator = rows.iterator();
+        var count = format == ExportFormat.CSV
+                ? this.writeCsv(iterator, columns, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))
+                : this.writeNdjson(iterator, columns, this.objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        logger.info("Exported %d rows!".formatted(count));
+        return count;
+    }
+
+    private <T> long writeNdjson(Iterator<T> rows, List<Column<T>> columns, JsonGenerator generator)
+            throws IOException {
+        long count = 0;
+        try (generator) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            while (rows.hasNext()) {
+                var row = rows.next();
+                generator.writeStartObject();
+                for (var column : columns) {
+                    generator.writeFieldName(column.name());
+                    writeJsonValue(generator, column.value().apply(row));
+                }
+                generator.writeEndObject();
+                count++;
+            }
+            generator.writeRaw('\n');
+        }
+        return count;
+    }
+
+    private static void writeJsonValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Long number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Boolean bool) {
+            generator.writeBoolean(bool);
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    private <T> long writeCsv(Iterator<T> rows, List<Column<T>> columns, Writer writer) throws IOException {
+        long count = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            writer.write(i == 0 ? "" : ",");
+            writer.write(columns.get(i).name());
+        }
+        writer.write("\r\n");
+        while (rows.hasNext()) {
+            var row = rows.next();
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCsvValue(writer, columns.get(i).value().apply(row));
+            }
+            writer.write("\r\n");
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * RFC 4180 field: quoted only when it contains a separator, quote or line break.
+     */
+    private static void writeCsvValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        var text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private record Column<T>(String name, Function<T, Object> value) {
+    }
+}
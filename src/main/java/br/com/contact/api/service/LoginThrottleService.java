@@ -0,0 +1,98 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.service.exceptions.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Throttles login attempts per username and per client IP before any password hashing happens.
+ * <p>
+ * Each key holds a single {@link AtomicLong} with its theoretical arrival time (GCRA, the token bucket
+ * expressed as one timestamp), updated with a CAS loop, so checks never lock. Buckets live in a size-capped
+ * cache and expire once idle for a full period, when they would be full again anyway.
+ */
+@Service
+@RequiredArgsConstructor
+public class LoginThrottleService {
+
+    private static final Function<String, AtomicLong> NEW_BUCKET = key -> new AtomicLong(Long.MIN_VALUE);
+
+    @Value("${security.loginThrottle.maxKeys:500000}")
+    private long maxKeys;
+
+    @Value("${security.loginThrottle.username.permits:5}")
+    private int usernamePermits;
+
+    @Value("${security.loginThrottle.username.period:1m}")
+    private Duration usernamePeriod;
+
+    @Value("${security.loginThrottle.ip.permits:30}")
+    private int ipPermits;
+
+    @Value("${security.loginThrottle.ip.period:1m}")
+    private Duration ipPeriod;
+
+    private final MeterRegistry meterRegistry;
+
+    private Limit usernameLimit;
+    private Limit ipLimit;
+
+    @PostConstruct
+    protected void init() {
+        usernameLimit = new Limit(usernamePermits, usernamePeriod, maxKeys);
+        ipLimit = new Limit(ipPermits, ipPeriod, maxKeys);
+        CaffeineCacheMetrics.monitor(meterRegistry, usernameLimit.buckets, "login.throttle.username");
+        CaffeineCacheMetrics.monitor(meterRegistry, ipLimit.buckets, "login.throttle.ip");
+    }
+
+    public void acquire(String username, String clientIp) {
+        var now = System.nanoTime();
+        if (clientIp != null && !ipLimit.tryAcquire(clientIp, now)) {
+            throw new TooManyRequestsException("Too many login attempts from this address, try again later.");
+        }
+        if (username != null && !usernameLimit.tryAcquire(username.toLowerCase(Locale.ROOT), now)) {
+            throw new TooManyRequestsException("Too many login attempts for this user, try again later.");
+        }
+    }
+
+    private static final class Limit {
+        private final long interval;
+        private final long tolerance;
+        private final Cache<String, AtomicLong> buckets;
+
+        private Limit(int permits, Duration period, long maxKeys) {
+            this.interval = period.toNanos() / permits;
+            this.tolerance = period.toNanos() - interval;
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(period)
+                    .recordStats()
+                    .build();
+        }
+
+        private boolean tryAcquire(String key, long now) {
+            var bucket = buckets.get(key, NEW_BUCKET);
+            while (true) {
+                var arrival = bucket.get();
+                var start = arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival;
+                if (start - now > tolerance) {
+                    return false;
+                }
+                if (bucket.compareAndSet(arrival, start + interval)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
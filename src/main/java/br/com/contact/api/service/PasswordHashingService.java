@@ -0,0 +1,108 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.service.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+
+/**
+ * Runs BCrypt work on a dedicated pool sized to the CPU, so a burst of logins or user creations cannot take
+ * over the servlet threads. When the queue is full the caller gets a {@link ServiceUnavailableException}
+ * right away instead of waiting.
+ */
+@Service
+@RequiredArgsConstructor
+public class PasswordHashingService {
+
+    @Value("${security.password.hashing.threads:0}")
+    private int threads;
+
+    @Value("${security.password.hashing.queueCapacity:64}")
+    private int queueCapacity;
+
+    @Value("${security.password.hashing.timeout:5s}")
+    private Duration timeout;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor executor;
+
+    private volatile String dummyHash;
+
+    @PostConstruct
+    protected void init() {
+        var poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password.hashing");
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdown();
+    }
+
+    public String encode(String rawPassword) {
+        return execute(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Compares on the pool. A {@code null} hash, as for an unknown username, is compared against a dummy hash so
+     * the answer takes as long as for a wrong password.
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return execute(() -> passwordEncoder.matches(rawPassword, encodedPassword != null ? encodedPassword : dummyHash()));
+    }
+
+    /**
+     * Only reads the hash prefix, so it runs on the caller's thread.
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    public <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many password operations in progress, try again later.", e);
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ServiceUnavailableException("Password operation timed out, try again later.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ServiceUnavailableException("Password operation interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private String dummyHash() {
+        var hash = dummyHash;
+        if (hash == null) {
+            hash = passwordEncoder.encode("userNotFoundPassword");
+            dummyHash = hash;
+        }
+        return hash;
+    }
+}
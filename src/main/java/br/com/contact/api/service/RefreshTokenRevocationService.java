@@ -0,0 +1,41 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.repository.RevokedRefreshTokenRepository;
+import br.com.contact.api.service.exceptions.AuthorizationException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of refresh token ids that were already used. Consuming a token is a single primary-key insert
+ * that reports whether the id was new, so a use costs one round trip and replays fail on every node.
+ */
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenRevocationService {
+
+    private final Logger logger = Logger.getLogger(RefreshTokenRevocationService.class.getName());
+
+    private final RevokedRefreshTokenRepository revokedRefreshTokenRepository;
+
+    /**
+     * Marks the refresh token as used, failing when it was used or revoked before.
+     */
+    @Transactional
+    public void consume(String jti, Instant expiresAt) {
+        if (jti == null || this.revokedRefreshTokenRepository.insertIfAbsent(jti, expiresAt) == 0) {
+            throw new AuthorizationException("Refresh token already used or revoked!");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.revocation.purgeInterval:PT1H}")
+    @Transactional
+    public void purgeExpired() {
+        var purged = this.revokedRefreshTokenRepository.deleteExpired(Instant.now());
+        logger.info("Purged %d expired refresh token ids!".formatted(purged));
+    }
+}
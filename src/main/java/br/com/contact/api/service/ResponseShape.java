@@ -0,0 +1,70 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.service.exceptions.BadRequestException;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * What a read returns, from its {@code fields} and {@code expand} parameters. {@code fields} lists the attributes
+ * to write, all of them when absent; {@code expand=branches:N} how many levels of company branches to include,
+ * one by default. Levels and collections that are left out are not loaded from the database either.
+ */
+public record ResponseShape(Set<String> fields, int depth) {
+
+    public static final int MAX_DEPTH = 10;
+
+    public static final ResponseShape DEFAULT = new ResponseShape(Set.of(), 1);
+
+    public static ResponseShape from(String fields, String expand) {
+        var depth = DEFAULT.depth();
+        if (expand != null && !expand.isBlank()) {
+            for (var expansion : expand.split(",")) {
+                var parts = expansion.trim().split(":", 2);
+                if (!"branches".equals(parts[0])) {
+                    throw new BadRequestException("Unsupported expansion: %s".formatted(expansion.trim()));
+                }
+                depth = parts.length == 1 ? 1 : parseDepth(parts[1]);
+            }
+        }
+        return new ResponseShape(fields(fields), depth);
+    }
+
+    /**
+     * The requested attribute names, empty when every attribute is wanted. The {@code id} is always written, so
+     * nested objects can still be told apart.
+     */
+    public static Set<String> fields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return Set.of();
+        }
+        var names = new LinkedHashSet<String>();
+        names.add("id");
+        Arrays.stream(fields.split(",")).map(String::trim).filter(name -> !name.isEmpty()).forEach(names::add);
+        return names;
+    }
+
+    public boolean includes(String field) {
+        return this.fields.isEmpty() || this.fields.contains(field);
+    }
+
+    /**
+     * Levels of branches to map, none when they are not among the fields.
+     */
+    public int branchDepth() {
+        return this.includes("companyBranches") ? this.depth : 0;
+    }
+
+    private static int parseDepth(String depth) {
+        try {
+            var levels = Integer.parseInt(depth.trim());
+            if (levels >= 0 && levels <= MAX_DEPTH) {
+                return levels;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        throw new BadRequestException("Invalid expansion depth: %s, expected 0 to %d.".formatted(depth, MAX_DEPTH));
+    }
+}
@@ -0,0 +1,117 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.service.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical reads: the first caller for a key runs the load on its own thread and every
+ * caller arriving while it runs waits for the same result, or the same exception, instead of querying again.
+ * Nothing is kept once the load finishes, so this only flattens bursts and is no cache. A caller that waits
+ * longer than the timeout stops waiting and loads by itself.
+ * <p>
+ * Metrics are per flight name rather than per key, so their number stays bounded however many keys are read.
+ */
+@Service
+public class SingleFlightService implements MeterBinder {
+
+    @Value("${cache.singleFlight.timeout:5s}")
+    private Duration timeout;
+
+    private final ConcurrentHashMap<Flight, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    @SuppressWarnings("unchecked")
+    public <T> T load(String name, Object key, Supplier<T> loader) {
+        var stats = this.stats(name);
+        var flight = new Flight(name, key);
+        var future = new CompletableFuture<Object>();
+        var running = this.inFlight.putIfAbsent(flight, future);
+        if (running == null) {
+            stats.loads.increment();
+            try {
+                var value = loader.get();
+                future.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                this.inFlight.remove(flight, future);
+            }
+        }
+        stats.shared.increment();
+        try {
+            return (T) running.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            stats.timeouts.increment();
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Read interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        this.stats.forEach((name, stats) -> register(registry, name, stats));
+    }
+
+    private Stats stats(String name) {
+        var stats = this.stats.get(name);
+        if (stats == null) {
+            stats = this.stats.computeIfAbsent(name, created -> new Stats());
+            var registry = this.meterRegistry;
+            if (registry != null) {
+                register(registry, name, stats);
+            }
+        }
+        return stats;
+    }
+
+    private void register(MeterRegistry registry, String name, Stats stats) {
+        FunctionCounter.builder("singleflight.loads", stats.loads, LongAdder::sum).tag("name", name)
+                .description("Reads that ran their own load").register(registry);
+        FunctionCounter.builder("singleflight.shared", stats.shared, LongAdder::sum).tag("name", name)
+                .description("Reads that waited for a load already running").register(registry);
+        FunctionCounter.builder("singleflight.timeouts", stats.timeouts, LongAdder::sum).tag("name", name)
+                .description("Reads that stopped waiting and loaded by themselves").register(registry);
+        Gauge.builder("singleflight.inflight", this.inFlight,
+                        flights -> flights.keySet().stream().filter(flight -> flight.name().equals(name)).count())
+                .tag("name", name).description("Loads running now").register(registry);
+    }
+
+    private record Flight(String name, Object key) {
+    }
+
+    private static final class Stats {
+        private final LongAdder loads = new LongAdder();
+        private final LongAdder shared = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+    }
+}
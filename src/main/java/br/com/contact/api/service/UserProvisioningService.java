@@ -0,0 +1,267 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.entity.model.request.UserRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.ImportErrorResponse;
+import br.com.contact.api.entity.model.response.PermissionResponse;
+import br.com.contact.api.entity.model.response.UserImportResponse;
+import br.com.contact.api.repository.PermissionRepository;
+import br.com.contact.api.repository.UserBatchRepository;
+import br.com.contact.api.service.exceptions.BadRequestException;
+import br.com.contact.api.service.exceptions.ServiceUnavailableException;
+import br.com.contact.api.util.JsonRows;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk user provisioning. Rows are read from the request body as they arrive and handled in chunks: the BCrypt
+ * hashes of a chunk are computed in parallel on a fork-join pool sized to the cores, then its users, addresses
+ * and permission links are written as JDBC batches in one transaction per chunk. A failed chunk does not undo
+ * the chunks before it; rejected rows, and the rows of a chunk the database refused, are reported and skipped.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserProvisioningService {
+
+    private static final String MALFORMED_BODY = "Malformed import body.";
+
+    @Value("${security.password.provisioning.threads:0}")
+    private int threads;
+
+    @Value("${security.password.provisioning.chunkSize:500}")
+    private int chunkSize;
+
+    private final Logger logger = Logger.getLogger(UserProvisioningService.class.getName());
+
+    private final UserBatchRepository userBatchRepository;
+
+    private final PermissionRepository permissionRepository;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final CacheManager cacheManager;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final MeterRegistry meterRegistry;
+
+    private ForkJoinPool pool;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Counter provisioned;
+
+    @PostConstruct
+    protected void init() {
+        pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        provisioned = meterRegistry.counter("users.provisioned");
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Reads a JSON array of users, or one user per line (NDJSON), in the shape of {@code POST /users}.
+     */
+    public UserImportResponse provision(InputStream in) throws IOException {
+        logger.info("Provisioning users!");
+        Iterator<UserRequest> rows = new JsonRows<>(this.objectMapper.readerFor(UserRequest.class).readValues(in));
+        var permissionIds = this.permissionRepository.findAll().stream().map(Permission::getId)
+                .collect(Collectors.toSet());
+        var response = new UserImportResponse();
+        var seen = new HashSet<String>();
+        var chunk = new ArrayList<ProvisionRow>(chunkSize);
+        long number = 0;
+        while (hasNext(rows)) {
+            number++;
+            var row = this.readRow(rows, number, permissionIds, response);
+            if (row == null) {
+                continue;
+            }
+            if (!seen.add(row.username())) {
+                response.getErrors().add(new ImportErrorResponse(number, row.username(),
+                        "Username already exist."));
+                continue;
+            }
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                this.writeChunk(chunk, response);
+            }
+        }
+        this.writeChunk(chunk, response);
+        response.getErrors().sort(Comparator.comparingLong(ImportErrorResponse::getRow));
+        logger.info("Provisioned %d users with %d errors!".formatted(response.getImported(),
+                response.getErrors().size()));
+        return response;
+    }
+
+    private static boolean hasNext(Iterator<UserRequest> rows) {
+        try {
+            return rows.hasNext();
+        } catch (UncheckedIOException e) {
+            throw new BadRequestException(MALFORMED_BODY);
+        }
+    }
+
+    /**
+     * The next valid row, or {@code null} after recording why it was rejected.
+     */
+    private ProvisionRow readRow(Iterator<UserRequest> rows, long number, Set<Long> permissionIds,
+                                 UserImportResponse response) {
+        UserRequest request;
+        try {
+            request = rows.next();
+        } catch (IllegalArgumentException e) {
+            response.getErrors().add(new ImportErrorResponse(number, null, e.getMessage()));
+            return null;
+        } catch (UncheckedIOException e) {
+            throw new BadRequestException(MALFORMED_BODY);
+        }
+        var violations = this.validator.validate(request);
+        if (!violations.isEmpty()) {
+            var message = violations.stream().map(ConstraintViolation::getMessage).sorted()
+                    .collect(Collectors.joining(" "));
+            response.getErrors().add(new ImportErrorResponse(number, request.getUsername(), message));
+            return null;
+        }
+        var permissions = request.getPermissions() == null ? Set.<Long>of() : request.getPermissions().stream()
+                .map(PermissionResponse::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        var unknown = permissions.stream().filter(id -> !permissionIds.contains(id)).sorted().toList();
+        if (!unknown.isEmpty()) {
+            response.getErrors().add(new ImportErrorResponse(number, request.getUsername(),
+                    "Permission not found: %s".formatted(unknown)));
+            return null;
+        }
+        return new ProvisionRow(number, request, permissions);
+    }
+
+    private void writeChunk(List<ProvisionRow> chunk, UserImportResponse response) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        var existing = this.userBatchRepository.findIdsByUsername(
+                chunk.stream().map(ProvisionRow::username).toList());
+        var rows = new ArrayList<ProvisionRow>(chunk.size());
+        for (var row : chunk) {
+            if (existing.containsKey(row.username())) {
+                response.getErrors().add(new ImportErrorResponse(row.number(), row.username(),
+                        "Username already exist."));
+            } else {
+                rows.add(row);
+            }
+        }
+        chunk.clear();
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        this.encodePasswords(rows);
+        try {
+            this.insertChunk(rows);
+        } catch (DataIntegrityViolationException e) {
+            logger.warning("Chunk of %d users rejected: %s".formatted(rows.size(),
+                    e.getMostSpecificCause().getMessage()));
+            rows.forEach(row -> response.getErrors().add(new ImportErrorResponse(row.number(), row.username(),
+                    "Rejected by the database with its chunk.")));
+            return;
+        }
+
+        var cache = this.cacheManager.getCache(CacheConfig.USERS);
+        if (cache != null) {
+            rows.forEach(row -> cache.evict(row.username()));
+        }
+        response.setImported(response.getImported() + rows.size());
+        this.provisioned.increment(rows.size());
+        logger.info("Provisioned %d users so far!".formatted(response.getImported()));
+    }
+
+    /**
+     * Writes the users of a chunk with their addresses and permission links, all or none of them.
+     */
+    private void insertChunk(List<ProvisionRow> rows) {
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.userBatchRepository.insertAll(rows.stream().map(ProvisionRow::request).toList());
+            var ids = this.userBatchRepository.findIdsByUsername(rows.stream().map(ProvisionRow::username).toList());
+            var addresses = new ArrayList<Map.Entry<Long, AddressResponse>>();
+            var permissions = new ArrayList<long[]>();
+            for (var row : rows) {
+                var id = ids.get(row.username());
+                if (row.request().getAddresses() != null) {
+                    row.request().getAddresses().stream().filter(Objects::nonNull)
+                            .forEach(address -> addresses.add(new AbstractMap.SimpleEntry<>(id, address)));
+                }
+                row.permissions().forEach(permission -> permissions.add(new long[]{id, permission}));
+            }
+            if (!addresses.isEmpty()) {
+                this.userBatchRepository.insertAddresses(addresses);
+            }
+            if (!permissions.isEmpty()) {
+                this.userBatchRepository.insertPermissions(permissions);
+            }
+        });
+    }
+
+    /**
+     * Replaces the raw passwords of the rows with their hashes, spread over the cores.
+     */
+    private void encodePasswords(List<ProvisionRow> rows) {
+        try {
+            this.pool.submit(() -> rows.parallelStream().forEach(row ->
+                    row.request().setPassword(this.passwordEncoder.encode(row.request().getPassword())))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Password operation interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private record ProvisionRow(long number, UserRequest request, Set<Long> permissions) {
+
+        String username() {
+            return this.request.getUsername();
+        }
+    }
+}
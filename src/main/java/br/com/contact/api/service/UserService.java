@@ -1,100 +1,261 @@
 package br.com.contact.api.service;
 
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.config.security.jwt.TokenVersionRegistry;
 import br.com.contact.api.entity.User;
 import br.com.contact.api.entity.model.request.UserRequest;
+import br.com.contact.api.entity.model.response.CursorPageResponse;
 import br.com.contact.api.entity.model.response.UserResponse;
-import br.com.contact.api.mapper.ModelMapperConfig;
+import br.com.contact.api.entity.model.security.UserSnapshot;
+import br.com.contact.api.mapper.UserMapper;
 import br.com.contact.api.repository.UserRepository;
+import br.com.contact.api.service.exceptions.BadRequestException;
 import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import br.com.contact.api.service.exceptions.PreconditionFailedException;
+import br.com.contact.api.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.logging.Logger;
 
 @Service
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final Logger logger = Logger.getLogger(UserService.class.getName());
 
     private final UserRepository userRepository;
 
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final TokenVersionRegistry tokenVersions;
+
+    private final PermissionRegistry permissionRegistry;
+
+    private final PasswordHashingService passwordHashingService;
+
+    private final SingleFlightService singleFlightService;
 
 
     public List<UserResponse> findAll() {
+        return this.findAll(ResponseShape.DEFAULT);
+    }
+
+    public List<UserResponse> findAll(ResponseShape shape) {
         logger.info("Finding all users!");
         return this.userRepository.findAll()
                 .stream()
-                .map(user -> ModelMapperConfig.parseObject(user, UserResponse.class))
+                .map(mapper(shape))
                 .toList();
     }
 
     public Page<UserResponse> findAllPageable(PageRequest pageable) {
+        return this.findAllPageable(pageable, ResponseShape.DEFAULT);
+    }
+
+    public Page<UserResponse> findAllPageable(PageRequest pageable, ResponseShape shape) {
         logger.info("Finding all companies pageable!");
-        var userPage = this.userRepository.findAll(pageable);
-        return userPage.map(user -> ModelMapperConfig.parseObject(userPage, UserResponse.class));
+        return this.userRepository.findAll(pageable).map(mapper(shape));
+    }
+
+    public Slice<UserResponse> findAllSlice(PageRequest pageable) {
+        return this.findAllSlice(pageable, ResponseShape.DEFAULT);
+    }
+
+    public Slice<UserResponse> findAllSlice(PageRequest pageable, ResponseShape shape) {
+        logger.info("Finding all users slice!");
+        return this.userRepository.findAllBy(pageable).map(mapper(shape));
+    }
+
+    public CursorPageResponse<UserResponse> findAllByCursor(String cursor, int size, boolean descending) {
+        return this.findAllByCursor(cursor, size, descending, ResponseShape.DEFAULT);
+    }
+
+    public CursorPageResponse<UserResponse> findAllByCursor(String cursor, int size, boolean descending,
+                                                            ResponseShape shape) {
+        logger.info("Finding all users by cursor!");
+        var limit = size + 1;
+        List<User> users;
+        if (cursor == null || cursor.isBlank()) {
+            users = descending
+                    ? this.userRepository.findFirstOrderByFullnameDesc(limit)
+                    : this.userRepository.findFirstOrderByFullnameAsc(limit);
+        } else {
+            var after = this.decodeCursor(cursor);
+            descending = after.descending();
+            if (descending) {
+                users = after.key() == null
+                        ? fill(this.userRepository.findNextNullFullnameDesc(after.id(), limit), limit,
+                        this.userRepository::findFirstNamedOrderByFullnameDesc)
+                        : this.userRepository.findNextOrderByFullnameDesc(after.key(), after.id(), limit);
+            } else {
+                users = after.key() == null
+                        ? this.userRepository.findNextNullFullnameAsc(after.id(), limit)
+                        : fill(this.userRepository.findNextOrderByFullnameAsc(after.key(), after.id(), limit), limit,
+                        remaining -> this.userRepository.findNextNullFullnameAsc(0L, remaining));
+            }
+        }
+        return KeysetCursor.page(users, size, descending, User::getFullname, User::getId, mapper(shape));
+    }
+
+    /**
+     * Completes a page that ran out of users in one fullname group with the first users of the next group.
+     */
+    private static List<User> fill(List<User> users, int limit, IntFunction<List<User>> next) {
+        if (users.size() >= limit) {
+            return users;
+        }
+        var page = new ArrayList<>(users);
+        page.addAll(next.apply(limit - users.size()));
+        return page;
     }
 
     public UserResponse findById(Long id) {
-        logger.info("Finding one user!");
-        var userResponse = this.userRepository.findById(id)
-                .orElseThrow(() -> new ObjectNotFoundException("Object Not Found! Id: %s Type %s".formatted(id, User.class.getSimpleName())));
+        return this.findById(id, ResponseShape.DEFAULT);
+    }
+
+    public UserResponse findById(Long id, ResponseShape shape) {
+        return this.findVersionedById(id, shape).value();
+    }
+
+    /**
+     * The user together with the version it was read at, both from one load. Concurrent reads of one user in the
+     * same shape share that load.
+     */
+    public Versioned<UserResponse> findVersionedById(Long id, ResponseShape shape) {
+        var addresses = shape.includes("addresses");
+        return this.singleFlightService.load("users", List.of(id, addresses), () -> {
+            logger.info("Finding one user!");
+            var user = this.findEntityById(id);
+            return new Versioned<>(user.getVersion(), mapper(shape).apply(user));
+        });
+    }
 
-        return ModelMapperConfig.parseObject(userResponse, UserResponse.class);
+    /**
+     * The current version, read with a primary key probe so conditional reads of an unchanged user skip loading it.
+     */
+    public long findVersion(Long id) {
+        return this.userRepository.findVersionById(id).orElseThrow(() -> this.notFound(id));
     }
 
     public User findByUsername(String username) {
-        logger.info("Finding one user by name: %s Type %s!".formatted(username, User.class.getSimpleName()));
+        logger.fine(() -> "Finding one user by name: %s Type %s!".formatted(username, User.class.getSimpleName()));
         return this.userRepository.findByUsername(username)
                 .orElseThrow(() -> new ObjectNotFoundException("Object Not Found! Username: %s Type %s"
                         .formatted(username, User.class.getSimpleName())));
     }
 
+    @CacheEvict(cacheNames = CacheConfig.USERS, key = "#userRequest.username")
     public UserResponse create(UserRequest userRequest) {
+        return this.createVersioned(userRequest).value();
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.USERS, key = "#userRequest.username")
+    public Versioned<UserResponse> createVersioned(UserRequest userRequest) {
         logger.info("Creating one user!");
-        userRequest.setPassword(this.passwordEncoder.encode(userRequest.getPassword()));
-        var userResponse = this.userRepository.save(ModelMapperConfig.parseObject(userRequest, User.class));
-        return ModelMapperConfig.parseObject(userResponse, UserResponse.class);
+        userRequest.setPassword(this.passwordHashingService.encode(userRequest.getPassword()));
+        var user = this.userRepository.save(UserMapper.INSTANCE.toEntity(userRequest));
+        return new Versioned<>(user.getVersion(), UserMapper.INSTANCE.toResponse(user));
     }
 
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
     public UserResponse update(Long id, UserRequest userRequest) {
-        logger.info("Updating one user!");
-        var userResponse = this.findById(id);
-        this.updateData(userResponse, ModelMapperConfig.parseObject(userRequest, UserResponse.class));
-        var user = this.userRepository.save(ModelMapperConfig.parseObject(userResponse, User.class));
-        return ModelMapperConfig.parseObject(user, UserResponse.class);
+        return this.update(id, userRequest, null).value();
     }
 
-    private void updateData(UserResponse response, UserResponse request) {
-        response.setFullname(request.getFullname());
-        response.setUsername(request.getUsername());
-        response.setAccountNonLocked(request.getAccountNonLocked());
-        response.setAccountNonExpired(request.getAccountNonExpired());
-        response.setCredentialsNonExpired(request.getCredentialsNonExpired());
-        response.setEnabled(request.getEnabled());
-        response.setPermissions(request.getPermissions());
-        response.setAddresses(request.getAddresses());
-        response.setContactInfo(request.getContactInfo());
+    /**
+     * Runs in one transaction, so the user is saved as it was loaded instead of merged with another SELECT.
+     *
+     * @param expectedVersions the versions the client last read, from {@code If-Match}; {@code null} accepts any.
+     *                         A change committed between this check and the write is still caught by the version
+     *                         column and reported as a conflict.
+     * @return the user with the version it was written at, flushed so the version is the new one
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
+    public Versioned<UserResponse> update(Long id, UserRequest userRequest, Collection<Long> expectedVersions) {
+        logger.info("Updating one user!");
+        var user = this.findEntityById(id);
+        if (expectedVersions != null && !expectedVersions.contains(user.getVersion())) {
+            throw new PreconditionFailedException("User %s was changed, its version is %d."
+                    .formatted(id, user.getVersion()));
+        }
+        this.tokenVersions.revoke(user);
+        UserMapper.INSTANCE.update(userRequest, user);
+        user = this.userRepository.saveAndFlush(user);
+        return new Versioned<>(user.getVersion(), UserMapper.INSTANCE.toResponse(user));
     }
 
+    @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)
     public void delete(Long id) {
         logger.info("Deleting one user!");
-        var userResponse = this.findById(id);
-        this.userRepository.deleteById(userResponse.getId());
+        var user = this.findEntityById(id);
+        this.userRepository.deleteById(user.getId());
+        this.tokenVersions.evict(user.getUsername());
+    }
+
+    /**
+     * Addresses are a lazy collection, so leaving them out of the fields also skips loading them.
+     */
+    private static Function<User, UserResponse> mapper(ResponseShape shape) {
+        return shape.includes("addresses")
+                ? UserMapper.INSTANCE::toResponse
+                : UserMapper.INSTANCE::toResponseWithoutAddresses;
+    }
+
+    private KeysetCursor decodeCursor(String cursor) {
+        try {
+            return KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor.");
+        }
+    }
+
+    private User findEntityById(Long id) {
+        return this.userRepository.findById(id).orElseThrow(() -> this.notFound(id));
+    }
+
+    private ObjectNotFoundException notFound(Long id) {
+        return new ObjectNotFoundException("Object Not Found! Id: %s Type %s".formatted(id, User.class.getSimpleName()));
+    }
+
+    /**
+     * Throws {@link UsernameNotFoundException} for unknown users, as the authentication manager expects: it then
+     * still hashes the password, so a login for a missing user takes as long as one with a wrong password.
+     */
+    @Override
+    @Cacheable(cacheNames = CacheConfig.USERS, key = "#username", sync = true)
+    public UserSnapshot loadUserByUsername(String username) throws UsernameNotFoundException {
+        logger.fine(() -> "Loading user details by name: %s".formatted(username));
+        return this.userRepository.findByUsername(username)
+                .map(user -> UserSnapshot.from(user, this.permissionRegistry))
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: %s".formatted(username)));
     }
 
+    /**
+     * Called after a successful login whose stored hash was made with a lower BCrypt cost than the configured one.
+     */
     @Override
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        logger.info("Finding one user by name: %s".formatted(username));
-        return this.findByUsername(username);
+    @CacheEvict(cacheNames = CacheConfig.USERS, key = "#user.username")
+    public UserSnapshot updatePassword(UserDetails user, String newPassword) {
+        logger.info("Upgrading password hash of one user!");
+        var entity = this.findByUsername(user.getUsername());
+        entity.setPassword(newPassword);
+        return UserSnapshot.from(this.userRepository.save(entity), this.permissionRegistry);
     }
 }
@@ -0,0 +1,7 @@
+package br.com.contact.api.service;
+
+/**
+ * A response and the version of the row it was mapped from, for writing it with its ETag.
+ */
+public record Versioned<T>(long version, T value) {
+}
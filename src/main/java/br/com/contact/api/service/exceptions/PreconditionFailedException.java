@@ -0,0 +1,12 @@
+package br.com.contact.api.service.exceptions;
+
+import java.io.Serial;
+
+public class PreconditionFailedException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
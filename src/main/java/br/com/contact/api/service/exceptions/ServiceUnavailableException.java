@@ -0,0 +1,16 @@
+package br.com.contact.api.service.exceptions;
+
+import java.io.Serial;
+
+public class ServiceUnavailableException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package br.com.contact.api.service.exceptions;
+
+import java.io.Serial;
+
+public class TooManyRequestsException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
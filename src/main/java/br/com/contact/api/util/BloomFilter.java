@@ -0,0 +1,60 @@
+package br.com.contact.api.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over 64-bit keys, such as CNPJs read as numbers. Lookups never allocate. A negative
+ * answer is exact, a positive one must be confirmed by the caller against the source of truth.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    private BloomFilter(long bitCount, int hashFunctions) {
+        this.bitCount = bitCount;
+        this.hashFunctions = hashFunctions;
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) >>> 6));
+    }
+
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        var n = Math.max(expectedInsertions, 1);
+        var m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        var k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        return new BloomFilter(Math.max(m, 64), k);
+    }
+
+    public void put(long key) {
+        var h1 = mix(key);
+        var h2 = mix(h1) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            var index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            var word = (int) (index >>> 6);
+            var mask = 1L << index;
+            var current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(long key) {
+        var h1 = mix(key);
+        var h2 = mix(h1) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            var index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long value) {
+        var z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
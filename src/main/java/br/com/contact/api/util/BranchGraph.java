@@ -0,0 +1,429 @@
+package br.com.contact.api.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable graph of company ids and their branch links, in compressed sparse row form: company {@code i} of
+ * the sorted {@code ids} has its branches at {@code branches[branchOffsets[i]..branchOffsets[i + 1])} and its
+ * parents likewise, all as indexes into {@code ids}. Nothing is boxed, so queries only allocate their result and
+ * a visited bit per company. Changes return a new graph and leave this one untouched, so it can be read from any
+ * thread without locking; a {@link Patch} is applied in one linear pass over the arrays, without sorting them
+ * again. Walks skip companies already visited, so a cycle in the links cannot loop.
+ */
+public final class BranchGraph {
+
+    private static final long[] NONE = new long[0];
+
+    private final long[] ids;
+    private final int[] branchOffsets;
+    private final int[] branches;
+    private final int[] parentOffsets;
+    private final int[] parents;
+
+    private BranchGraph(long[] ids, int[] from, int[] to) {
+        this.ids = ids;
+        this.branchOffsets = new int[ids.length + 1];
+        this.branches = new int[from.length];
+        this.parentOffsets = new int[ids.length + 1];
+        this.parents = new int[from.length];
+        fill(from, to, this.branchOffsets, this.branches);
+        fill(to, from, this.parentOffsets, this.parents);
+    }
+
+    public static BranchGraph empty() {
+        return new Builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static Patch patch() {
+        return new Patch();
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(this.ids, id) >= 0;
+    }
+
+    public int size() {
+        return this.ids.length;
+    }
+
+    public int links() {
+        return this.branches.length;
+    }
+
+    /**
+     * @return the direct branches of the company, empty when it is unknown
+     */
+    public long[] branchesOf(long id) {
+        var index = Arrays.binarySearch(this.ids, id);
+        if (index < 0) {
+            return NONE;
+        }
+        var result = new long[this.branchOffsets[index + 1] - this.branchOffsets[index]];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.ids[this.branches[this.branchOffsets[index] + i]];
+        }
+        return result;
+    }
+
+    /**
+     * @return every company below the given one, closest first
+     */
+    public long[] descendants(long id) {
+        return this.walk(id, this.branchOffsets, this.branches);
+    }
+
+    /**
+     * @return every company above the given one, closest first
+     */
+    public long[] ancestors(long id) {
+        return this.walk(id, this.parentOffsets, this.parents);
+    }
+
+    public int subtreeSize(long id) {
+        return this.descendants(id).length;
+    }
+
+    /**
+     * @return the companies that are no other company's branch
+     */
+    public long[] roots() {
+        var count = 0;
+        for (int i = 0; i < this.ids.length; i++) {
+            if (this.parentOffsets[i] == this.parentOffsets[i + 1]) {
+                count++;
+            }
+        }
+        var roots = new long[count];
+        for (int i = 0, r = 0; i < this.ids.length; i++) {
+            if (this.parentOffsets[i] == this.parentOffsets[i + 1]) {
+                roots[r++] = this.ids[i];
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @return whether {@code to} can be reached from {@code from} following branch links, or they are the same
+     */
+    public boolean reaches(long from, long to) {
+        if (from == to) {
+            return true;
+        }
+        var start = Arrays.binarySearch(this.ids, from);
+        var target = Arrays.binarySearch(this.ids, to);
+        if (start < 0 || target < 0) {
+            return false;
+        }
+        var visited = new BitSet(this.ids.length);
+        var queue = new int[16];
+        queue[0] = start;
+        visited.set(start);
+        for (int head = 0, tail = 1; head < tail; head++) {
+            var current = queue[head];
+            for (int b = this.branchOffsets[current]; b < this.branchOffsets[current + 1]; b++) {
+                var branch = this.branches[b];
+                if (branch == target) {
+                    return true;
+                }
+                if (!visited.get(branch)) {
+                    visited.set(branch);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = branch;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether some company is, through its branches, its own branch
+     */
+    public boolean hasCycle() {
+        // Kahn: repeatedly drop companies without parents; whatever is left sits on or below a cycle.
+        var remainingParents = new int[this.ids.length];
+        var queue = new int[this.ids.length];
+        var tail = 0;
+        for (int i = 0; i < this.ids.length; i++) {
+            remainingParents[i] = this.parentOffsets[i + 1] - this.parentOffsets[i];
+            if (remainingParents[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            var current = queue[head];
+            for (int b = this.branchOffsets[current]; b < this.branchOffsets[current + 1]; b++) {
+                if (--remainingParents[this.branches[b]] == 0) {
+                    queue[tail++] = this.branches[b];
+                }
+            }
+        }
+        return tail < this.ids.length;
+    }
+
+    /**
+     * @return links on the shortest path up to a root, 0 for a root and -1 when the company is unknown or only
+     * sits below a cycle
+     */
+    public int depth(long id) {
+        var start = Arrays.binarySearch(this.ids, id);
+        if (start < 0) {
+            return -1;
+        }
+        var visited = new BitSet(this.ids.length);
+        var queue = new int[16];
+        var depths = new int[16];
+        queue[0] = start;
+        visited.set(start);
+        for (int head = 0, tail = 1; head < tail; head++) {
+            var current = queue[head];
+            if (this.parentOffsets[current] == this.parentOffsets[current + 1]) {
+                return depths[head];
+            }
+            for (int p = this.parentOffsets[current]; p < this.parentOffsets[current + 1]; p++) {
+                var parent = this.parents[p];
+                if (!visited.get(parent)) {
+                    visited.set(parent);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                        depths = Arrays.copyOf(depths, tail * 2);
+                    }
+                    queue[tail] = parent;
+                    depths[tail++] = depths[head] + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a graph with every change of the patch. Unchanged companies keep their links, already ordered, so
+     * the new arrays are written in one pass over the old ones plus a sort of the changed companies only.
+     */
+    public BranchGraph apply(Patch patch) {
+        if (patch.isEmpty()) {
+            return this;
+        }
+        var removed = new BitSet(this.ids.length);
+        for (var id : patch.removed) {
+            var index = Arrays.binarySearch(this.ids, id);
+            if (index >= 0) {
+                removed.set(index);
+            }
+        }
+        var added = patch.branches.keySet().stream()
+                .mapToLong(Long::longValue)
+                .filter(id -> !this.contains(id))
+                .sorted()
+                .toArray();
+
+        // Merge the kept and the added companies, remembering where each index moved.
+        var ids = new long[this.ids.length - removed.cardinality() + added.length];
+        var oldIndex = new int[ids.length];
+        var newIndex = new int[this.ids.length];
+        Arrays.fill(newIndex, -1);
+        for (int i = 0, a = 0, n = 0; n < ids.length; ) {
+            if (i < this.ids.length && removed.get(i)) {
+                i++;
+            } else if (a < added.length && (i == this.ids.length || added[a] < this.ids[i])) {
+                oldIndex[n] = -1;
+                ids[n++] = added[a++];
+            } else {
+                oldIndex[n] = i;
+                newIndex[i] = n;
+                ids[n++] = this.ids[i++];
+            }
+        }
+
+        var changed = new BitSet(ids.length);
+        var changedBranches = new HashMap<Integer, int[]>();
+        var capacity = this.branches.length;
+        for (var entry : patch.branches.entrySet()) {
+            var index = Arrays.binarySearch(ids, entry.getKey());
+            var targets = Arrays.stream(entry.getValue())
+                    .mapToInt(branch -> Arrays.binarySearch(ids, branch))
+                    .filter(target -> target >= 0)
+                    .sorted()
+                    .distinct()
+                    .toArray();
+            changed.set(index);
+            changedBranches.put(index, targets);
+            capacity += targets.length;
+        }
+
+        var from = new int[capacity];
+        var to = new int[capacity];
+        var links = 0;
+        for (int n = 0; n < ids.length; n++) {
+            if (changed.get(n)) {
+                for (var target : changedBranches.get(n)) {
+                    from[links] = n;
+                    to[links++] = target;
+                }
+            } else if (oldIndex[n] >= 0) {
+                var old = oldIndex[n];
+                for (int b = this.branchOffsets[old]; b < this.branchOffsets[old + 1]; b++) {
+                    var target = newIndex[this.branches[b]];
+                    if (target >= 0) {
+                        from[links] = n;
+                        to[links++] = target;
+                    }
+                }
+            }
+        }
+        return new BranchGraph(ids, Arrays.copyOf(from, links), Arrays.copyOf(to, links));
+    }
+
+    private long[] walk(long id, int[] offsets, int[] targets) {
+        var start = Arrays.binarySearch(this.ids, id);
+        if (start < 0) {
+            return NONE;
+        }
+        var visited = new BitSet(this.ids.length);
+        var queue = new int[16];
+        queue[0] = start;
+        visited.set(start);
+        var tail = 1;
+        for (int head = 0; head < tail; head++) {
+            var current = queue[head];
+            for (int t = offsets[current]; t < offsets[current + 1]; t++) {
+                var next = targets[t];
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        var result = new long[tail - 1];
+        for (int i = 1; i < tail; i++) {
+            result[i - 1] = this.ids[queue[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Counting sort of the links by their source into {@code offsets}/{@code targets}.
+     */
+    private static void fill(int[] sources, int[] targets, int[] offsets, int[] sorted) {
+        for (var source : sources) {
+            offsets[source + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        var next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < sources.length; i++) {
+            sorted[next[sources[i]]++] = targets[i];
+        }
+    }
+
+    /**
+     * Collects companies and links into growable primitive arrays. Links to companies that were not added are
+     * dropped, as are repeated links.
+     */
+    public static final class Builder {
+
+        private long[] ids = new long[16];
+        private int idCount;
+        private long[] from = new long[16];
+        private long[] to = new long[16];
+        private int linkCount;
+
+        private Builder() {
+        }
+
+        public Builder addCompany(long id) {
+            if (this.idCount == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.idCount * 2);
+            }
+            this.ids[this.idCount++] = id;
+            return this;
+        }
+
+        public Builder addLink(long companyId, long branchId) {
+            if (this.linkCount == this.from.length) {
+                this.from = Arrays.copyOf(this.from, this.linkCount * 2);
+                this.to = Arrays.copyOf(this.to, this.linkCount * 2);
+            }
+            this.from[this.linkCount] = companyId;
+            this.to[this.linkCount++] = branchId;
+            return this;
+        }
+
+        public BranchGraph build() {
+            var sorted = Arrays.copyOf(this.ids, this.idCount);
+            Arrays.sort(sorted);
+            var unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            var ids = Arrays.copyOf(sorted, unique);
+
+            // Encode each link as one long so repeats can be dropped with a sort.
+            var keys = new long[this.linkCount];
+            var kept = 0;
+            for (int i = 0; i < this.linkCount; i++) {
+                var source = Arrays.binarySearch(ids, this.from[i]);
+                var target = Arrays.binarySearch(ids, this.to[i]);
+                if (source >= 0 && target >= 0) {
+                    keys[kept++] = ((long) source << 32) | target;
+                }
+            }
+            Arrays.sort(keys, 0, kept);
+            var from = new int[kept];
+            var to = new int[kept];
+            var links = 0;
+            for (int i = 0; i < kept; i++) {
+                if (i == 0 || keys[i] != keys[i - 1]) {
+                    from[links] = (int) (keys[i] >>> 32);
+                    to[links++] = (int) keys[i];
+                }
+            }
+            return new BranchGraph(ids, Arrays.copyOf(from, links), Arrays.copyOf(to, links));
+        }
+    }
+
+    /**
+     * Changes collected to be applied together by {@link #apply(Patch)}. The last change to a company wins, and
+     * branches that are not in the patched graph are dropped.
+     */
+    public static final class Patch {
+
+        private final Map<Long, long[]> branches = new HashMap<>();
+        private final Set<Long> removed = new HashSet<>();
+
+        private Patch() {
+        }
+
+        public Patch setBranches(long id, long... branchIds) {
+            this.removed.remove(id);
+            this.branches.put(id, branchIds.clone());
+            return this;
+        }
+
+        public Patch remove(long id) {
+            this.branches.remove(id);
+            this.removed.add(id);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return this.branches.isEmpty() && this.removed.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package br.com.contact.api.util;
+
+/**
+ * CNPJs are stored as their 14 digits; input may come formatted ({@code 33.333.749/0001-00}).
+ */
+public final class Cnpj {
+
+    private static final int LENGTH = 14;
+
+    private Cnpj() {
+    }
+
+    public static String normalize(String cnpj) {
+        if (cnpj == null) {
+            return null;
+        }
+        var digits = new StringBuilder(LENGTH);
+        for (int i = 0; i < cnpj.length(); i++) {
+            var c = cnpj.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * The 14 digits of a normalized CNPJ as a number, or {@code -1} when it is not 14 digits long.
+     */
+    public static long toLong(String cnpj) {
+        if (cnpj == null || cnpj.length() != LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            var c = cnpj.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
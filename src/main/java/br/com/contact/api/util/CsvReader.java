@@ -0,0 +1,106 @@
+package br.com.contact.api.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads RFC 4180 records one at a time: quoted fields may contain separators, doubled quotes and line breaks,
+ * and records end with CRLF or LF. Blank lines are skipped.
+ */
+public final class CsvReader implements Iterator<List<String>> {
+
+    private final Reader reader;
+    private List<String> next;
+    private int lookahead = -2;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null) {
+            this.next = this.read();
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var record = this.next;
+        this.next = null;
+        return record;
+    }
+
+    private List<String> read() {
+        var c = this.nextChar();
+        while (c == '\r' || c == '\n') {
+            c = this.nextChar();
+        }
+        if (c < 0) {
+            return null;
+        }
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        var quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IllegalArgumentException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    if (this.peekChar() == '"') {
+                        field.append('"');
+                        this.nextChar();
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c < 0) {
+                if (c == '\r' && this.peekChar() == '\n') {
+                    this.nextChar();
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = this.nextChar();
+        }
+    }
+
+    private int nextChar() {
+        if (this.lookahead != -2) {
+            var c = this.lookahead;
+            this.lookahead = -2;
+            return c;
+        }
+        try {
+            return this.reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int peekChar() {
+        if (this.lookahead == -2) {
+            this.lookahead = this.nextChar();
+        }
+        return this.lookahead;
+    }
+}
@@ -0,0 +1,42 @@
+package br.com.contact.api.util;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * Iterates the values of a JSON array or of a value-per-line (NDJSON) body for bulk imports. A value that does
+ * not map to the target type fails with an {@link IllegalArgumentException}, and the iterator moves on to the
+ * next one; a body that is not JSON at all fails with an {@link UncheckedIOException}.
+ */
+public final class JsonRows<T> implements Iterator<T> {
+
+    private final MappingIterator<T> values;
+
+    public JsonRows(MappingIterator<T> values) {
+        this.values = values;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return this.values.hasNextValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        try {
+            return this.values.nextValue();
+        } catch (JsonMappingException e) {
+            throw new IllegalArgumentException("Malformed row.", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package br.com.contact.api.util;
+
+import br.com.contact.api.entity.model.response.CursorPageResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position after the last row of a page ordered by {@code (key, id)}. Clients only see it as an opaque
+ * string; the direction travels with it so following pages keep the order of the first one. The key is
+ * {@code null} when the last row had none, which is encoded with its own marker rather than as text.
+ */
+public record KeysetCursor(String key, long id, boolean descending) {
+
+    private static final char SEPARATOR = ':';
+    private static final char NULL_KEY = '!';
+
+    public String encode() {
+        var raw = (descending ? "D" : "A") + id + (key == null ? String.valueOf(NULL_KEY) : SEPARATOR + key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value was not produced by {@link #encode()}
+     */
+    public static KeysetCursor decode(String cursor) {
+        var raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        var end = 1;
+        while (end < raw.length() && Character.isDigit(raw.charAt(end))) {
+            end++;
+        }
+        if (end < 2 || end == raw.length() || (raw.charAt(0) != 'A' && raw.charAt(0) != 'D')) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        String key;
+        if (raw.charAt(end) == SEPARATOR) {
+            key = raw.substring(end + 1);
+        } else if (raw.charAt(end) == NULL_KEY && end == raw.length() - 1) {
+            key = null;
+        } else {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return new KeysetCursor(key, Long.parseLong(raw.substring(1, end)), raw.charAt(0) == 'D');
+    }
+
+    /**
+     * Builds a page from rows fetched with a limit of {@code size + 1}: the extra row only signals that
+     * another page exists, so no count query is needed.
+     */
+    public static <T, R> CursorPageResponse<R> page(List<T> rows, int size, boolean descending,
+                                                    Function<T, String> key, Function<T, Long> id,
+                                                    Function<T, R> mapper) {
+        var hasNext = rows.size() > size;
+        var content = hasNext ? rows.subList(0, size) : rows;
+        String next = null;
+        if (hasNext) {
+            var last = content.get(content.size() - 1);
+            next = new KeysetCursor(key.apply(last), id.apply(last), descending).encode();
+        }
+        return new CursorPageResponse<>(content.stream().map(mapper).toList(), next);
+    }
+}
@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS revoked_refresh_tokens
+(
+    jti        VARCHAR(36) PRIMARY KEY,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_revoked_refresh_tokens_expires_at ON revoked_refresh_tokens (expires_at);
@@ -0,0 +1,3 @@
+CREATE INDEX IF NOT EXISTS idx_companies_name_id ON companies (name, id);
+
+CREATE INDEX IF NOT EXISTS idx_users_fullname_id ON users (fullname, id);
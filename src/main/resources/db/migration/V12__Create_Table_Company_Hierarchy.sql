@@ -0,0 +1,32 @@
+CREATE TABLE IF NOT EXISTS company_hierarchy
+(
+    ancestor_id   bigint  NOT NULL,
+    descendant_id bigint  NOT NULL,
+    depth         integer NOT NULL,
+    CONSTRAINT pk_company_hierarchy PRIMARY KEY (ancestor_id, descendant_id),
+    CONSTRAINT fk_company_hierarchy_ancestor FOREIGN KEY (ancestor_id) REFERENCES companies ON DELETE CASCADE,
+    CONSTRAINT fk_company_hierarchy_descendant FOREIGN KEY (descendant_id) REFERENCES companies ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_company_hierarchy_descendant ON company_hierarchy (descendant_id, depth);
+
+CREATE INDEX IF NOT EXISTS idx_company_branches_branch ON company_branches (company_branch_id);
+
+-- Links to deleted companies were never removed; they would break the foreign keys above.
+DELETE
+FROM company_branches cb
+WHERE NOT EXISTS (SELECT 1 FROM companies c WHERE c.id = cb.company_id)
+   OR NOT EXISTS (SELECT 1 FROM companies c WHERE c.id = cb.company_branch_id);
+
+INSERT INTO company_hierarchy (ancestor_id, descendant_id, depth)
+WITH RECURSIVE reach (ancestor_id, descendant_id, depth, path) AS
+    (SELECT company_id, company_branch_id, 1, ARRAY [company_id, company_branch_id]
+     FROM company_branches
+     UNION ALL
+     SELECT r.ancestor_id, cb.company_branch_id, r.depth + 1, r.path || cb.company_branch_id
+     FROM reach r
+              JOIN company_branches cb ON cb.company_id = r.descendant_id
+     WHERE cb.company_branch_id <> ALL (r.path))
+SELECT ancestor_id, descendant_id, MIN(depth)
+FROM reach
+GROUP BY ancestor_id, descendant_id;
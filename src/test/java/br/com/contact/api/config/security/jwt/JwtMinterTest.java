@@ -0,0 +1,71 @@
+package br.com.contact.api.config.security.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JwtMinterTest {
+    private static final byte[] SECRET = "c2VjcmV0".getBytes(StandardCharsets.UTF_8);
+    private static final Date ISSUED_AT = new Date(1_700_000_000_123L);
+    private static final Date EXPIRES_AT = new Date(1_700_086_400_123L);
+    private static final long ROLE_MASK = 0b11;
+    private static final String ISSUER = "http://localhost:8080";
+
+    private final JwtMinter minter = new JwtMinter(SECRET);
+    private final Algorithm algorithm = Algorithm.HMAC256(SECRET);
+
+    @Test
+    @DisplayName("When an access token is minted it matches the java-jwt builder byte for byte")
+    void mintAccessTokenThenMatchJavaJwt() {
+        var expected = JWT.create()
+                .withClaim("rol", ROLE_MASK)
+                .withClaim("ver", 3)
+                .withIssuedAt(ISSUED_AT)
+                .withExpiresAt(EXPIRES_AT)
+                .withSubject("usuario1")
+                .withIssuer(ISSUER)
+                .sign(algorithm);
+
+        var minted = minter.payload()
+                .claim("rol", ROLE_MASK)
+                .claim("ver", 3)
+                .claim("iat", ISSUED_AT.getTime() / 1000)
+                .claim("exp", EXPIRES_AT.getTime() / 1000)
+                .claim("sub", "usuario1")
+                .claim("iss", ISSUER)
+                .sign();
+
+        assertEquals(expected, minted);
+    }
+
+    @Test
+    @DisplayName("When claims need JSON escaping they match the java-jwt builder byte for byte")
+    void mintWithEscapedCharactersThenMatchJavaJwt() {
+        var subject = "jo\"ão\\\n\t\u0001/é";
+        var expected = JWT.create()
+                .withClaim("rol", 0L)
+                .withClaim("ver", 0)
+                .withIssuedAt(ISSUED_AT)
+                .withExpiresAt(EXPIRES_AT)
+                .withSubject(subject)
+                .withJWTId("4b8f7f0e-3c1e-4f0a-9d55-0c2d1f6a7e21")
+                .sign(algorithm);
+
+        var minted = minter.payload()
+                .claim("rol", 0L)
+                .claim("ver", 0)
+                .claim("iat", ISSUED_AT.getTime() / 1000)
+                .claim("exp", EXPIRES_AT.getTime() / 1000)
+                .claim("sub", subject)
+                .claim("jti", "4b8f7f0e-3c1e-4f0a-9d55-0c2d1f6a7e21")
+                .sign();
+
+        assertEquals(expected, minted);
+    }
+}
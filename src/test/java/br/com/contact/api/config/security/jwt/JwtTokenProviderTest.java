@@ -0,0 +1,163 @@
+package br.com.contact.api.config.security.jwt;
+
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.repository.PermissionRepository;
+import br.com.contact.api.repository.UserRepository;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class JwtTokenProviderTest {
+    private static final String USERNAME = "user";
+    private static final List<String> ROLES = List.of("ADMIN");
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private PermissionRepository permissionRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private MeterRegistry meterRegistry;
+    private TokenVersionRegistry tokenVersions;
+    private JwtTokenProvider tokenProvider;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.tokenVersions = new TokenVersionRegistry(userRepository);
+        ReflectionTestUtils.setField(tokenVersions, "maxSize", 100L);
+        ReflectionTestUtils.setField(tokenVersions, "ttl", Duration.ofMinutes(1));
+        this.tokenVersions.init();
+        when(this.userRepository.findTokenVersionByUsername(USERNAME)).thenReturn(Optional.of(0));
+        when(this.permissionRepository.findAll(any(Sort.class))).thenReturn(List.of(
+                new Permission(1L, "ADMIN"), new Permission(2L, "MANAGER"), new Permission(3L, "COMMON_USER")));
+        var permissionRegistry = new PermissionRegistry(permissionRepository);
+        ReflectionTestUtils.invokeMethod(permissionRegistry, "init");
+        this.tokenProvider = new JwtTokenProvider(userDetailsService, meterRegistry, tokenVersions, permissionRegistry);
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret", "secret");
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpiration", 3600000L);
+        ReflectionTestUtils.setField(tokenProvider, "verifiedCacheSize", 100L);
+        this.tokenProvider.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @DisplayName("When the same token is validated twice the signature is verified only once")
+    void validateTokenTwiceThenHitCache() {
+        var token = this.tokenProvider.createAccessToken(USERNAME, ROLES).getAccessToken();
+
+        assertTrue(this.tokenProvider.validateToken(token));
+        assertTrue(this.tokenProvider.validateToken(token));
+
+        assertEquals(1.0, cacheGets("miss"));
+        assertEquals(1.0, cacheGets("hit"));
+    }
+
+    @Test
+    @DisplayName("When the token signature is invalid it is rejected and not cached")
+    void validateTamperedTokenThenThrowException() {
+        var token = this.tokenProvider.createAccessToken(USERNAME, ROLES).getAccessToken();
+        // Changes the first signature character, whose six bits are all significant, so the signature always differs.
+        var signature = token.lastIndexOf('.') + 1;
+        var tampered = token.substring(0, signature) + (token.charAt(signature) == 'A' ? 'B' : 'A')
+                + token.substring(signature + 1);
+
+        assertThrows(JWTVerificationException.class, () -> this.tokenProvider.validateToken(tampered));
+        assertThrows(JWTVerificationException.class, () -> this.tokenProvider.validateToken(tampered));
+        assertEquals(0.0, cacheGets("hit"));
+    }
+
+    @Test
+    @DisplayName("When stateless mode is enabled the authentication is built from the token claims")
+    void getAuthenticationStatelessThenSkipUserLookup() {
+        ReflectionTestUtils.setField(tokenProvider, "stateless", true);
+        var token = this.tokenProvider.createAccessToken(USERNAME, ROLES).getAccessToken();
+
+        var authentication = this.tokenProvider.getAuthentication(token);
+
+        assertNotNull(authentication);
+        assertEquals(USERNAME, authentication.getName());
+        assertEquals("ADMIN", authentication.getAuthorities().iterator().next().getAuthority());
+        verifyNoInteractions(this.userDetailsService);
+    }
+
+    @Test
+    @DisplayName("When roles are minted as a mask the authorities are shared singletons")
+    void getAuthenticationFromRoleMaskThenReuseAuthorities() {
+        ReflectionTestUtils.setField(tokenProvider, "stateless", true);
+        var token = this.tokenProvider.createAccessToken(USERNAME, List.of("ADMIN", "COMMON_USER")).getAccessToken();
+
+        var first = this.tokenProvider.getAuthentication(token);
+        var second = this.tokenProvider.getAuthentication(token);
+
+        assertEquals(5L, JWT.decode(token).getClaim("rol").asLong());
+        assertTrue(JWT.decode(token).getClaim("roles").isMissing());
+        assertEquals(List.of("ADMIN", "COMMON_USER"),
+                first.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        assertSame(first.getAuthorities().iterator().next(), second.getAuthorities().iterator().next());
+    }
+
+    @Test
+    @DisplayName("When the user token version is bumped older tokens are no longer authenticated")
+    void getAuthenticationAfterRevokeThenReturnNull() {
+        ReflectionTestUtils.setField(tokenProvider, "stateless", true);
+        var token = this.tokenProvider.createAccessToken(USERNAME, ROLES).getAccessToken();
+
+        when(this.userRepository.findTokenVersionByUsername(USERNAME)).thenReturn(Optional.of(1));
+        this.tokenVersions.evict(USERNAME);
+
+        assertNull(this.tokenProvider.getAuthentication(token));
+        var newToken = this.tokenProvider.createAccessToken(USERNAME, ROLES).getAccessToken();
+        assertNotNull(this.tokenProvider.getAuthentication(newToken));
+    }
+
+    @Test
+    @DisplayName("When the user of a token no longer exists the token is not authenticated")
+    void getAuthenticationForMissingUserThenReturnNull() {
+        ReflectionTestUtils.setField(tokenProvider, "stateless", true);
+        var token = this.tokenProvider.createAccessToken(USERNAME, ROLES).getAccessToken();
+
+        when(this.userRepository.findTokenVersionByUsername(USERNAME)).thenReturn(Optional.empty());
+        this.tokenVersions.evict(USERNAME);
+
+        assertNull(this.tokenProvider.getAuthentication(token));
+    }
+
+    private double cacheGets(String result) {
+        return this.meterRegistry.get("cache.gets").tag("cache", "jwt.verified").tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.contact.api.config.security.jwt;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.entity.model.request.UserRequest;
+import br.com.contact.api.service.PasswordHashingService;
+import br.com.contact.api.service.SingleFlightService;
+import br.com.contact.api.service.UserService;
+import br.com.contact.api.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({TokenVersionRegistry.class, PermissionRegistry.class, UserService.class, SingleFlightService.class, CacheConfig.class})
+class TokenVersionRegistryTest {
+
+    private static final String USERNAME = "versioned";
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TokenVersionRegistry tokenVersions;
+    @Autowired
+    private UserService userService;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        var user = new User();
+        user.setFullname("Versioned User");
+        user.setUsername(USERNAME);
+        user.setPassword("password");
+        user.setEnabled(true);
+        this.id = this.entityManager.persistAndFlush(user).getId();
+        this.entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("When a user is updated the token version is bumped once and stored in the users table")
+    void updateThenPersistOneBump() {
+        assertEquals(0, this.tokenVersions.current(USERNAME));
+
+        var request = new UserRequest();
+        request.setFullname("Renamed User");
+        request.setUsername(USERNAME);
+        request.setPassword("password");
+        this.userService.update(this.id, request);
+
+        assertEquals(1, this.jdbcTemplate.queryForObject("SELECT token_version FROM users WHERE id = ?",
+                Integer.class, this.id));
+        assertEquals(1, this.tokenVersions.current(USERNAME));
+        assertFalse(this.tokenVersions.isCurrent(USERNAME, 0));
+        assertTrue(this.tokenVersions.isCurrent(USERNAME, 1));
+    }
+
+    @Test
+    @DisplayName("When a user does not exist that answer is cached, and minting for a user created later reads again")
+    void currentOfMissingUserThenCacheSentinelUntilMinting() {
+        assertEquals(TokenVersionRegistry.NO_USER, this.tokenVersions.current("created-later"));
+        assertFalse(this.tokenVersions.isCurrent("created-later", 0));
+
+        var user = new User();
+        user.setUsername("created-later");
+        this.entityManager.persistAndFlush(user);
+
+        StatementCounter.assertAtMost(0, () -> assertFalse(this.tokenVersions.isCurrent("created-later", 0)));
+        assertEquals(0, this.tokenVersions.forMinting("created-later"));
+        assertTrue(this.tokenVersions.isCurrent("created-later", 0));
+    }
+}
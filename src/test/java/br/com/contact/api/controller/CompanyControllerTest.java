@@ -2,23 +2,44 @@ package br.com.contact.api.controller;
 
 import br.com.contact.api.entity.model.request.CompanyRequest;
 import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyGraphResponse;
+import br.com.contact.api.entity.model.response.CompanyGraphSummaryResponse;
+import br.com.contact.api.entity.model.response.CompanyHierarchyResponse;
 import br.com.contact.api.entity.model.response.CompanyResponse;
+import br.com.contact.api.service.CompanyGraphService;
+import br.com.contact.api.service.CompanyHierarchyService;
+import br.com.contact.api.service.CompanyImportService;
+import br.com.contact.api.service.CompanyJsonService;
+import br.com.contact.api.service.CompanyJsonService.CompanyJson;
 import br.com.contact.api.service.CompanyService;
+import br.com.contact.api.service.ExportFormat;
+import br.com.contact.api.service.ExportService;
+import br.com.contact.api.service.ResponseShape;
+import br.com.contact.api.service.Versioned;
+import br.com.contact.api.service.exceptions.BadRequestException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.modelmapper.ModelMapper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
@@ -45,9 +66,16 @@ class CompanyControllerTest {
     private CompanyController companyController;
     @Mock
     private CompanyService companyService;
-
     @Mock
-    private ModelMapper modelMapper;
+    private ExportService exportService;
+    @Mock
+    private CompanyImportService companyImportService;
+    @Mock
+    private CompanyHierarchyService companyHierarchyService;
+    @Mock
+    private CompanyGraphService companyGraphService;
+    @Mock
+    private CompanyJsonService companyJsonService;
 
     private CompanyRequest companyRequest;
     private CompanyResponse companyResponse;
@@ -62,9 +90,8 @@ class CompanyControllerTest {
     @Test
     @DisplayName("When the list of companies is returned successfully")
     void findAllCompanies() {
-        when(this.companyService.findAll()).thenReturn(List.of(companyResponse));
-        when(modelMapper.map(any(), any())).thenReturn(this.companyResponse);
-        ResponseEntity<List<CompanyResponse>> response = this.companyController.findAll();
+        when(this.companyService.findAll(ResponseShape.DEFAULT)).thenReturn(List.of(companyResponse));
+        ResponseEntity<List<CompanyResponse>> response = this.companyController.findAll(null, null);
 
         assertNotNull(response);
         assertNotNull(response.getBody());
@@ -79,9 +106,8 @@ class CompanyControllerTest {
     @Test
     @DisplayName("When the list of companies distinct is returned successfully")
     void findAllDistinctId() {
-        when(this.companyService.findAllDistinctId()).thenReturn(List.of(companyResponse));
-        when(modelMapper.map(any(), any())).thenReturn(this.companyResponse);
-        ResponseEntity<List<CompanyResponse>> response = this.companyController.findAllDistinctId();
+        when(this.companyService.findAllDistinctId(ResponseShape.DEFAULT)).thenReturn(List.of(companyResponse));
+        ResponseEntity<List<CompanyResponse>> response = this.companyController.findAllDistinctId(null, null);
 
         assertNotNull(response);
         assertNotNull(response.getBody());
@@ -95,41 +121,196 @@ class CompanyControllerTest {
     @Test
     @DisplayName("When the search for id is returned successfully")
     void findByIdCompanyThenReturnSuccess() {
-        when(this.companyService.findById(anyLong())).thenReturn(companyResponse);
-        when(modelMapper.map(any(), any())).thenReturn(companyResponse);
+        when(this.companyService.findVersionedById(anyLong(), any())).thenReturn(new Versioned<>(3L, companyResponse));
 
-        ResponseEntity<CompanyResponse> response = this.companyController.findById(COMPANY_ID);
+        var response = this.companyController.findById(COMPANY_ID, null, null, null, null);
 
         assertNotNull(response);
         assertNotNull(response.getBody());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+        verify(this.companyService, never()).findVersion(anyLong());
         assertEquals(ResponseEntity.class, response.getClass());
         assertEquals(CompanyResponse.class, response.getBody().getClass());
-        assertEquals(COMPANY_ID, response.getBody().getId());
+        assertEquals(COMPANY_ID, ((CompanyResponse) response.getBody()).getId());
+    }
+
+    @Test
+    @DisplayName("When the serialized company is cached its bytes are written, gzipped if the client accepts it")
+    void findByIdWithJsonCacheThenWriteBytes() {
+        var json = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        var gzip = new byte[]{31, -117};
+        when(this.companyJsonService.isEnabled()).thenReturn(true);
+        when(this.companyJsonService.findById(COMPANY_ID)).thenReturn(new CompanyJson(3L, json, gzip));
+        when(this.companyService.findVersionedById(anyLong(), any())).thenReturn(new Versioned<>(3L, companyResponse));
+
+        var plain = this.companyController.findById(COMPANY_ID, null, null, null, null);
+        var gzipped = this.companyController.findById(COMPANY_ID, null, null, "gzip, deflate", null);
+        this.companyController.findById(COMPANY_ID, "name", null, "gzip", null);
+
+        assertSame(json, plain.getBody());
+        assertEquals("\"3\"", plain.getHeaders().getETag());
+        assertEquals(MediaType.APPLICATION_JSON, plain.getHeaders().getContentType());
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertSame(gzip, gzipped.getBody());
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        verify(this.companyService, times(1)).findVersionedById(COMPANY_ID, ResponseShape.from("name", null));
+        verify(this.companyService, never()).findVersionedById(COMPANY_ID, ResponseShape.DEFAULT);
+    }
+
+    @Test
+    @DisplayName("When Accept-Encoding gives gzip a zero quality the bytes are written uncompressed")
+    void acceptsGzipThenHonourQualities() {
+        assertTrue(CompanyController.acceptsGzip("gzip"));
+        assertTrue(CompanyController.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(CompanyController.acceptsGzip("br, *;q=0.1"));
+        assertFalse(CompanyController.acceptsGzip(null));
+        assertFalse(CompanyController.acceptsGzip("gzip;q=0"));
+        assertFalse(CompanyController.acceptsGzip("gzip; q=0.000, *"));
+        assertFalse(CompanyController.acceptsGzip("*;q=0"));
+        assertFalse(CompanyController.acceptsGzip("deflate, br"));
+        assertFalse(CompanyController.acceptsGzip("gzip;q=high"));
+    }
+
+    @Test
+    @DisplayName("When the client's copy is current the read answers 304 from the version alone")
+    void findByIdWithMatchingETagThenNotModified() {
+        when(this.companyJsonService.isEnabled()).thenReturn(true);
+        when(this.companyService.findVersion(COMPANY_ID)).thenReturn(3L);
+
+        var cached = this.companyController.findById(COMPANY_ID, null, null, null, "W/\"2\", \"3\"");
+        var shaped = this.companyController.findById(COMPANY_ID, "name", null, null,
+                ETags.of(3L, ResponseShape.from("name", null)));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, cached.getStatusCode());
+        assertEquals("\"3\"", cached.getHeaders().getETag());
+        assertNull(cached.getBody());
+        assertEquals(HttpStatus.NOT_MODIFIED, shaped.getStatusCode());
+        verify(this.companyJsonService, never()).findById(anyLong());
+        verify(this.companyService, never()).findVersionedById(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("When the client's copy is stale, or branches are expanded deeper, the body is read")
+    void findByIdWithStaleETagThenReturnBody() {
+        when(this.companyService.findVersion(COMPANY_ID)).thenReturn(4L);
+        when(this.companyService.findVersionedById(anyLong(), any())).thenReturn(new Versioned<>(4L, companyResponse));
+        when(this.companyService.findById(anyLong(), any())).thenReturn(companyResponse);
+
+        var stale = this.companyController.findById(COMPANY_ID, null, null, null, "\"3\"");
+        var deep = this.companyController.findById(COMPANY_ID, null, "branches:2", null, "\"4\"");
+
+        assertEquals(HttpStatus.OK, stale.getStatusCode());
+        assertEquals("\"4\"", stale.getHeaders().getETag());
+        assertSame(companyResponse, stale.getBody());
+        assertEquals(HttpStatus.OK, deep.getStatusCode());
+        assertNull(deep.getHeaders().getETag());
+        verify(this.companyService, times(1)).findVersion(COMPANY_ID);
+    }
+
+    @Test
+    @DisplayName("When the update has If-Match the service gets the versions it names")
+    void updateWithIfMatchThenPassVersions() {
+        when(this.companyService.update(any(), any(), any())).thenReturn(new Versioned<>(4L, companyResponse));
+
+        this.companyController.update(COMPANY_ID, companyRequest, "\"3\", W/\"4\", \"5-0000abcd\", \"x\"");
+        this.companyController.update(COMPANY_ID, companyRequest, "*");
+
+        verify(this.companyService).update(COMPANY_ID, companyRequest, List.of(3L, 5L));
+        verify(this.companyService).update(COMPANY_ID, companyRequest, null);
+    }
+
+    @Test
+    @DisplayName("When the companies are exported the body streams the requested format")
+    void exportCompaniesThenStreamFormat() throws Exception {
+        var response = this.companyController.export("csv");
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.parseMediaType("text/csv"), response.getHeaders().getContentType());
+        verify(this.exportService, times(1)).exportCompanies(eq(ExportFormat.CSV), any());
+    }
+
+    @Test
+    @DisplayName("When a company is read with expand and fields the service gets that shape")
+    void findByIdWithExpandAndFieldsThenPassShape() {
+        when(this.companyService.findById(anyLong(), any())).thenReturn(companyResponse);
+
+        this.companyController.findById(COMPANY_ID, "name,companyBranches", "branches:3", null, null);
+
+        verify(this.companyService).findById(COMPANY_ID,
+                new ResponseShape(Set.of("id", "name", "companyBranches"), 3));
+        assertThrows(BadRequestException.class,
+                () -> this.companyController.findById(COMPANY_ID, null, "users", null, null));
+        assertThrows(BadRequestException.class,
+                () -> this.companyController.findById(COMPANY_ID, null, "branches:11", null, null));
+    }
+
+    @Test
+    @DisplayName("When the descendants of a company are returned with their depth")
+    void findDescendantsThenReturnSuccess() {
+        when(this.companyHierarchyService.findDescendants(COMPANY_ID)).thenReturn(List.of(
+                new CompanyHierarchyResponse(COMPANY_BRANCH_ID, COMPANY_BRANCH_NAME, COMPANY_BRANCH_CNPJ, 1)));
+
+        ResponseEntity<List<CompanyHierarchyResponse>> response = this.companyController.findDescendants(COMPANY_ID);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(COMPANY_BRANCH_ID, response.getBody().get(0).getId());
+        assertEquals(1, response.getBody().get(0).getDepth());
+    }
+
+    @Test
+    @DisplayName("When the graph of a company is asked whether it reaches another one")
+    void findGraphWithReachesThenReturnSuccess() {
+        when(this.companyGraphService.findById(COMPANY_ID, COMPANY_BRANCH_ID))
+                .thenReturn(new CompanyGraphResponse(COMPANY_ID, 0, 1, 1, 0, true));
+
+        var response = this.companyController.findGraph(COMPANY_ID, COMPANY_BRANCH_ID);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertTrue(response.getBody().getReaches());
+    }
+
+    @Test
+    @DisplayName("When the graph summary is returned with its roots and cycle flag")
+    void findGraphSummaryThenReturnSuccess() {
+        when(this.companyGraphService.summary())
+                .thenReturn(new CompanyGraphSummaryResponse(2, 1, List.of(COMPANY_ID), false));
+
+        var response = this.companyController.findGraphSummary();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(List.of(COMPANY_ID), response.getBody().getRoots());
+        assertFalse(response.getBody().getCyclic());
     }
 
     @Test
     @DisplayName("When the company is created successfully")
     void createCompanyThenReturnSuccess() {
-        when(this.companyService.create(any())).thenReturn(companyResponse);
+        when(this.companyService.createVersioned(any())).thenReturn(new Versioned<>(0L, companyResponse));
 
         ResponseEntity<CompanyResponse> response = this.companyController.create(companyRequest);
 
         assertEquals(ResponseEntity.class, response.getClass());
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("\"0\"", response.getHeaders().getETag());
         assertNotNull(response.getBody());
     }
 
     @Test
     @DisplayName("When the company is updated successfully")
     void updateCompanyThenReturnSuccess() {
-        when(this.companyService.update(COMPANY_ID, companyRequest)).thenReturn(companyResponse);
-        when(modelMapper.map(any(), any())).thenReturn(companyResponse);
+        when(this.companyService.update(COMPANY_ID, companyRequest, null))
+                .thenReturn(new Versioned<>(4L, companyResponse));
 
-        ResponseEntity<CompanyResponse> response = this.companyController.update(COMPANY_ID, companyRequest);
+        ResponseEntity<CompanyResponse> response = this.companyController.update(COMPANY_ID, companyRequest, null);
 
         assertNotNull(response);
         assertNotNull(response.getBody());
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"4\"", response.getHeaders().getETag());
         assertEquals(ResponseEntity.class, response.getClass());
         assertEquals(CompanyResponse.class, response.getBody().getClass());
 
@@ -0,0 +1,70 @@
+package br.com.contact.api.controller;
+
+import br.com.contact.api.config.JacksonConfig;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldsResponseBodyAdviceTest {
+
+    private final FieldsResponseBodyAdvice advice = new FieldsResponseBodyAdvice();
+
+    private ObjectMapper objectMapper;
+    private CompanyResponse company;
+
+    @BeforeEach
+    void setUp() {
+        var builder = new Jackson2ObjectMapperBuilder();
+        new JacksonConfig().fieldsFilterCustomizer().customize(builder);
+        this.objectMapper = builder.build();
+        var branch = new CompanyResponse(2L, "Branch", "14171534000195", null, null);
+        this.company = new CompanyResponse(1L, "Company", "33333749000100",
+                new AddressResponse("123 Main St", "São Paulo", "SP", 12345), Set.of(branch));
+    }
+
+    @Test
+    @DisplayName("When fields are requested only those and the id are written, at every level")
+    void writeWithFieldsThenOnlyThose() throws Exception {
+        var json = this.write("name,companyBranches");
+
+        assertEquals("{\"id\":1,\"name\":\"Company\",\"companyBranches\":[{\"id\":2,\"name\":\"Branch\"}]}", json);
+    }
+
+    @Test
+    @DisplayName("When no fields are requested every attribute is written")
+    void writeWithoutFieldsThenEverything() throws Exception {
+        var json = this.write(null);
+
+        assertTrue(json.contains("\"cnpj\":\"33333749000100\""));
+        assertTrue(json.contains("\"city\":\"São Paulo\""));
+        assertEquals(json, this.objectMapper.writeValueAsString(this.company));
+    }
+
+    private String write(String fields) throws Exception {
+        var request = new MockHttpServletRequest();
+        if (fields != null) {
+            request.setParameter("fields", fields);
+        }
+        var body = (MappingJacksonValue) this.advice.beforeBodyWrite(this.company, null, MediaType.APPLICATION_JSON,
+                MappingJackson2HttpMessageConverter.class, new ServletServerHttpRequest(request),
+                new ServletServerHttpResponse(new MockHttpServletResponse()));
+        var writer = body.getFilters() == null ? this.objectMapper.writer()
+                : this.objectMapper.writer(body.getFilters());
+        return writer.writeValueAsString(body.getValue());
+    }
+}
@@ -2,14 +2,17 @@ package br.com.contact.api.controller;
 
 import br.com.contact.api.entity.model.request.UserRequest;
 import br.com.contact.api.entity.model.response.*;
+import br.com.contact.api.service.ExportService;
+import br.com.contact.api.service.ResponseShape;
+import br.com.contact.api.service.UserProvisioningService;
 import br.com.contact.api.service.UserService;
+import br.com.contact.api.service.Versioned;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.modelmapper.ModelMapper;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -54,7 +57,9 @@ class UserControllerTest {
     @Mock
     private UserService userService;
     @Mock
-    private ModelMapper modelMapper;
+    private ExportService exportService;
+    @Mock
+    private UserProvisioningService userProvisioningService;
 
     private UserRequest userRequest;
     private UserResponse userResponse;
@@ -72,10 +77,8 @@ class UserControllerTest {
     @Test
     @DisplayName("When the list of users is returned successfully")
     void findAllUsersThenReturnSuccess() {
-        when(this.userService.findAll()).thenReturn(List.of(userResponse));
-        //when(modelMapperConfig.parseObject(any(), any())).thenReturn(userResponse);
-        when(modelMapper.map(any(), any())).thenReturn(this.userResponse);
-        ResponseEntity<List<UserResponse>> response = this.userController.findAll();
+        when(this.userService.findAll(ResponseShape.DEFAULT)).thenReturn(List.of(userResponse));
+        ResponseEntity<List<UserResponse>> response = this.userController.findAll(null);
 
         assertNotNull(response);
         assertNotNull(response.getBody());
@@ -89,11 +92,12 @@ class UserControllerTest {
     @Test
     @DisplayName("When the search for id is returned successfully")
     void findByIdUserThenReturnSuccess() {
-        when(this.userService.findById(anyLong())).thenReturn(userResponse);
-        when(modelMapper.map(any(), any())).thenReturn(userResponse);
+        when(this.userService.findVersionedById(anyLong(), any())).thenReturn(new Versioned<>(4L, userResponse));
 
-        ResponseEntity<UserResponse> response = this.userController.findById(USER_ID);
+        ResponseEntity<UserResponse> response = this.userController.findById(USER_ID, null, null);
 
+        assertEquals("\"4\"", response.getHeaders().getETag());
+        verify(this.userService, never()).findVersion(anyLong());
         assertNotNull(response);
         assertNotNull(response.getBody());
         assertEquals(ResponseEntity.class, response.getClass());
@@ -101,29 +105,56 @@ class UserControllerTest {
         assertEquals(USER_ID, response.getBody().getId());
     }
 
+    @Test
+    @DisplayName("When the client's copy of the user is current the read answers 304 without loading it")
+    void findByIdWithMatchingETagThenNotModified() {
+        when(this.userService.findVersion(USER_ID)).thenReturn(7L);
+
+        ResponseEntity<UserResponse> response = this.userController.findById(USER_ID, null, "\"7\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"7\"", response.getHeaders().getETag());
+        verify(this.userService, never()).findVersionedById(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("When the client's copy of the user is stale the read answers with the loaded user and its tag")
+    void findByIdWithStaleETagThenReturnUser() {
+        when(this.userService.findVersion(USER_ID)).thenReturn(8L);
+        when(this.userService.findVersionedById(USER_ID, ResponseShape.DEFAULT))
+                .thenReturn(new Versioned<>(8L, userResponse));
+
+        ResponseEntity<UserResponse> response = this.userController.findById(USER_ID, null, "\"7\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"8\"", response.getHeaders().getETag());
+        assertEquals(USER_ID, response.getBody().getId());
+    }
+
     @Test
     @DisplayName("When the user is created successfully")
     void createUserThenReturnSuccess() {
-        when(this.userService.create(any())).thenReturn(userResponse);
+        when(this.userService.createVersioned(any())).thenReturn(new Versioned<>(0L, userResponse));
 
         ResponseEntity<UserResponse> response = userController.create(userRequest);
 
         assertEquals(ResponseEntity.class, response.getClass());
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("\"0\"", response.getHeaders().getETag());
         assertNotNull(response.getBody());
     }
 
     @Test
     @DisplayName("When the user is updated successfully")
     void updateUserThenReturnSuccess() {
-        when(this.userService.update(USER_ID, userRequest)).thenReturn(userResponse);
-        when(modelMapper.map(any(), any())).thenReturn(userResponse);
+        when(this.userService.update(USER_ID, userRequest, null)).thenReturn(new Versioned<>(4L, userResponse));
 
-        ResponseEntity<UserResponse> response = userController.update(USER_ID, userRequest);
+        ResponseEntity<UserResponse> response = userController.update(USER_ID, userRequest, null);
 
         assertNotNull(response);
         assertNotNull(response.getBody());
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"4\"", response.getHeaders().getETag());
         assertEquals(ResponseEntity.class, response.getClass());
         assertEquals(UserResponse.class, response.getBody().getClass());
 
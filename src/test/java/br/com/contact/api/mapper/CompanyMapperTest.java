@@ -0,0 +1,56 @@
+package br.com.contact.api.mapper;
+
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.model.request.CompanyRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompanyMapperTest {
+
+    private static final Long COMPANY_ID = 1L;
+    private static final Long COMPANY_BRANCH_ID = 2L;
+    private static final String NAME = "Company";
+    private static final String CNPJ = "33333749000100";
+
+    @Test
+    @DisplayName("When a company is mapped to a response its branches are mapped too")
+    void toResponseThenMapBranches() {
+        var branch = new Company(COMPANY_BRANCH_ID, "Company Branch", "14171534000195", null, new HashSet<>(), 0);
+        var company = new Company(COMPANY_ID, NAME, CNPJ, new Address("123 Main St", "São Paulo", "SP", 12345),
+                Set.of(branch), 0);
+
+        var response = CompanyMapper.INSTANCE.toResponse(company);
+
+        assertEquals(COMPANY_ID, response.getId());
+        assertEquals(NAME, response.getName());
+        assertEquals(CNPJ, response.getCnpj());
+        assertEquals("São Paulo", response.getAddress().getCity());
+        assertEquals(COMPANY_BRANCH_ID, response.getCompanyBranches().iterator().next().getId());
+    }
+
+    @Test
+    @DisplayName("When a company is updated from a request the id and branches are left to the service")
+    void updateThenIgnoreIdAndBranches() {
+        var branches = new HashSet<Company>();
+        var company = new Company(COMPANY_ID, "Old", "14171534000195", null, branches, 0);
+        var request = new CompanyRequest(NAME, CNPJ, new AddressResponse("123 Main St", "São Paulo", "SP", 12345),
+                Set.of(new CompanyResponse(COMPANY_BRANCH_ID, null, null, null, null)));
+
+        CompanyMapper.INSTANCE.update(request, company);
+
+        assertEquals(COMPANY_ID, company.getId());
+        assertEquals(NAME, company.getName());
+        assertEquals(CNPJ, company.getCnpj());
+        assertEquals("SP", company.getAddress().getState());
+        assertSame(branches, company.getCompanyBranches());
+        assertTrue(company.getCompanyBranches().isEmpty());
+    }
+}
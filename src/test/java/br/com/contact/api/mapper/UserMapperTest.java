@@ -0,0 +1,78 @@
+package br.com.contact.api.mapper;
+
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.ContactInfo;
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.entity.Phone;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.entity.model.request.UserRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.ContactInfoResponse;
+import br.com.contact.api.entity.model.response.PermissionResponse;
+import br.com.contact.api.entity.model.response.PhoneResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserMapperTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String FULL_NAME = "Usuario 1";
+    private static final String USERNAME = "usuario1";
+    private static final String PASSWORD = "$2a$10$hash";
+    private static final String STREET = "123 Main St";
+    private static final String PHONE_NUMBER = "11999999999";
+
+    @Test
+    @DisplayName("When a user is mapped to a response every nested value is copied")
+    void toResponseThenCopyNestedValues() {
+        var address = new Address(STREET, "São Paulo", "SP", 12345);
+        var user = new User();
+        user.setId(USER_ID);
+        user.setFullname(FULL_NAME);
+        user.setUsername(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setEnabled(true);
+        user.getAddresses().add(address);
+        user.setContactInfo(new ContactInfo(address, new Phone(PHONE_NUMBER, "MOBILE")));
+        user.getPermissions().add(new Permission(1L, "ADMIN"));
+
+        var response = UserMapper.INSTANCE.toResponse(user);
+
+        assertEquals(USER_ID, response.getId());
+        assertEquals(FULL_NAME, response.getFullname());
+        assertEquals(USERNAME, response.getUsername());
+        assertTrue(response.getEnabled());
+        assertEquals(STREET, response.getAddresses().iterator().next().getStreet());
+        assertEquals(PHONE_NUMBER, response.getContactInfo().getHomePhone().getPhoneNumber());
+        assertEquals("ADMIN", response.getPermissions().iterator().next().getDescription());
+    }
+
+    @Test
+    @DisplayName("When a user is updated from a request the id and password are kept")
+    void updateThenKeepIdAndPassword() {
+        var user = new User();
+        user.setId(USER_ID);
+        user.setUsername(USERNAME);
+        user.setPassword(PASSWORD);
+        var request = new UserRequest();
+        request.setFullname(FULL_NAME);
+        request.setUsername("usuario2");
+        request.setPassword("plain");
+        request.setAddresses(Set.of(new AddressResponse(STREET, "São Paulo", "SP", 12345)));
+        request.setContactInfo(new ContactInfoResponse(null, new PhoneResponse(PHONE_NUMBER, "MOBILE")));
+        request.setPermissions(Set.of(new PermissionResponse(2L, "MANAGER")));
+
+        UserMapper.INSTANCE.update(request, user);
+
+        assertEquals(USER_ID, user.getId());
+        assertEquals(PASSWORD, user.getPassword());
+        assertEquals("usuario2", user.getUsername());
+        assertEquals(STREET, user.getAddresses().iterator().next().getStreet());
+        assertNull(user.getContactInfo().getHomeAddress());
+        assertEquals(2L, user.getPermissions().iterator().next().getId());
+    }
+}
@@ -1,30 +1,43 @@
 package br.com.contact.api.service;
 
+import br.com.contact.api.config.security.PermissionRegistry;
 import br.com.contact.api.config.security.jwt.JwtTokenProvider;
 import br.com.contact.api.entity.Permission;
 import br.com.contact.api.entity.User;
 import br.com.contact.api.entity.model.security.AccountCredentialsRequest;
 import br.com.contact.api.entity.model.security.TokenResponse;
+import br.com.contact.api.entity.model.security.UserSnapshot;
+import br.com.contact.api.repository.PermissionRepository;
 import br.com.contact.api.service.exceptions.AuthorizationException;
+import br.com.contact.api.service.exceptions.ServiceUnavailableException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.mockito.Spy;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 class AuthServiceTest {
     private static final String AUTHORIZATION_EXCEPTION = "Invalid username/password supplied!";
+    private static final String UNAVAILABLE = "Too many password operations in progress, try again later.";
     private static final int jwtExpiration = 86400000;
     private final Date now = new Date();
     private final Date validity = new Date(now.getTime() + jwtExpiration);
@@ -46,25 +59,43 @@ class AuthServiceTest {
     private final Date EXPIRATION = validity;
     private static final String ACCESS_TOKEN = "fakeAccessToken";
     private static final String REFRESH_TOKEN = "fakeRefreshAccessToken";
+    private static final String JTI = "4b8f7f0e-3c1e-4f0a-9d55-0c2d1f6a7e21";
+    private static final String REFRESH_TOKEN_USED = "Refresh token already used or revoked!";
 
 
-    @Mock
-    private AuthenticationManager authenticationManager;
-
     @Mock
     private JwtTokenProvider tokenProvider;
 
     @Mock
     private UserService userService;
 
+    @Mock
+    private PasswordHashingService passwordHashingService;
+
+    @Mock
+    private RefreshTokenRevocationService revocationService;
+
+    @Mock
+    private DecodedJWT decodedRefreshToken;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private PermissionRepository permissionRepository;
+
     @InjectMocks
     private AuthService authService;
+    private PermissionRegistry permissionRegistry;
     private User user;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
         this.startUser();
+        when(this.permissionRepository.findAll(any(Sort.class))).thenReturn(List.copyOf(user.getPermissions()));
+        this.permissionRegistry = new PermissionRegistry(this.permissionRepository);
+        ReflectionTestUtils.invokeMethod(this.permissionRegistry, "init");
     }
 
     @Test
@@ -72,11 +103,8 @@ class AuthServiceTest {
     void loginValidCredentialsThenReturnTokenResponse() {
         AccountCredentialsRequest request = new AccountCredentialsRequest(USERNAME, PASSWORD);
 
-        when(this.authenticationManager.authenticate(any()))
-                .thenReturn(new UsernamePasswordAuthenticationToken(USERNAME, PASSWORD));
-
-        when(this.userService.findByUsername(USERNAME)).thenReturn(user);
-
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
+        when(this.passwordHashingService.matches(PASSWORD, PASSWORD)).thenReturn(true);
         when(this.tokenProvider.createAccessToken(USERNAME, user.getRoles()))
                 .thenReturn(new TokenResponse(USERNAME, AUTHENTICATED, CREATED, EXPIRATION, ACCESS_TOKEN, REFRESH_TOKEN));
 
@@ -87,6 +115,69 @@ class AuthServiceTest {
         assertEquals(REFRESH_TOKEN, response.getRefreshToken());
         assertEquals(USERNAME, response.getUsername());
         assertEquals(AUTHENTICATED, response.getAuthenticated());
+        for (var stage : List.of("lookup", "hash", "token")) {
+            assertEquals(1, this.meterRegistry.get("auth.login").tag("stage", stage).timer().count(), stage);
+        }
+        verify(this.userService, never()).updatePassword(any(), any());
+    }
+
+    @Test
+    @DisplayName("When the username is unknown or the password wrong both are rejected after the hash stage")
+    void loginUnknownUserOrWrongPasswordThenHashBothAndThrowAuthorizationException() {
+        when(this.userService.loadUserByUsername("unknown")).thenThrow(new UsernameNotFoundException("unknown"));
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
+
+        var unknown = assertThrows(AuthorizationException.class,
+                () -> this.authService.login(new AccountCredentialsRequest("unknown", PASSWORD)));
+        var wrong = assertThrows(AuthorizationException.class,
+                () -> this.authService.login(new AccountCredentialsRequest(USERNAME, "wrong")));
+
+        assertEquals(AUTHORIZATION_EXCEPTION, unknown.getMessage());
+        assertEquals(AUTHORIZATION_EXCEPTION, wrong.getMessage());
+        verify(this.passwordHashingService).matches(PASSWORD, null);
+        verify(this.passwordHashingService).matches("wrong", PASSWORD);
+        assertEquals(2, this.meterRegistry.get("auth.login").tag("stage", "hash").timer().count());
+        verifyNoInteractions(this.tokenProvider);
+    }
+
+    @Test
+    @DisplayName("When the stored hash is outdated it is replaced from the request thread after the login")
+    void loginWithOutdatedHashThenUpdatePassword() {
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
+        when(this.passwordHashingService.matches(PASSWORD, PASSWORD)).thenReturn(true);
+        when(this.passwordHashingService.upgradeEncoding(PASSWORD)).thenReturn(true);
+        when(this.passwordHashingService.encode(PASSWORD)).thenReturn("rehashed");
+
+        this.authService.login(new AccountCredentialsRequest(USERNAME, PASSWORD));
+
+        verify(this.userService).updatePassword(any(UserSnapshot.class), eq("rehashed"));
+        verify(this.passwordHashingService, never()).execute(any());
+    }
+
+    @Test
+    @DisplayName("When the account is disabled the login is rejected even with the right password")
+    void loginDisabledUserThenThrowAuthorizationException() {
+        user.setEnabled(false);
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
+        when(this.passwordHashingService.matches(PASSWORD, PASSWORD)).thenReturn(true);
+
+        var exception = assertThrows(AuthorizationException.class,
+                () -> this.authService.login(new AccountCredentialsRequest(USERNAME, PASSWORD)));
+
+        assertEquals(AUTHORIZATION_EXCEPTION, exception.getMessage());
+        verifyNoInteractions(this.tokenProvider);
+    }
+
+    @Test
+    @DisplayName("When the password hashing pool is saturated the login fails fast")
+    void loginWithSaturatedHashingPoolThenThrowServiceUnavailableException() {
+        AccountCredentialsRequest request = new AccountCredentialsRequest(USERNAME, PASSWORD);
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
+        doThrow(new ServiceUnavailableException(UNAVAILABLE)).when(this.passwordHashingService).matches(any(), any());
+
+        var exception = assertThrows(ServiceUnavailableException.class, () -> this.authService.login(request));
+
+        assertEquals(UNAVAILABLE, exception.getMessage());
     }
 
     @Test
@@ -95,7 +186,9 @@ class AuthServiceTest {
 
         AccountCredentialsRequest request = new AccountCredentialsRequest(USERNAME, PASSWORD);
 
-        when(this.authenticationManager.authenticate(any()))
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
+        when(this.passwordHashingService.matches(PASSWORD, PASSWORD)).thenReturn(true);
+        when(this.tokenProvider.createAccessToken(any(), any()))
                 .thenThrow(new AuthorizationException(AUTHORIZATION_EXCEPTION));
 
         try {
@@ -109,9 +202,12 @@ class AuthServiceTest {
     @Test
     @DisplayName("When the refreshToken is generated successfully")
     void refreshTokenValidThenReturnTokenResponse() {
-        when(this.userService.findByUsername(USERNAME)).thenReturn(user);
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
 
-        when(this.tokenProvider.refreshToken(REFRESH_TOKEN))
+        when(this.tokenProvider.verifyRefreshToken(REFRESH_TOKEN)).thenReturn(decodedRefreshToken);
+        when(this.decodedRefreshToken.getSubject()).thenReturn(USERNAME);
+        when(this.decodedRefreshToken.getId()).thenReturn(JTI);
+        when(this.tokenProvider.createAccessToken(USERNAME, user.getRoles()))
                 .thenReturn(new TokenResponse(USERNAME, AUTHENTICATED, CREATED, EXPIRATION, ACCESS_TOKEN, REFRESH_TOKEN));
 
         TokenResponse response = this.authService.refreshToken(USERNAME, REFRESH_TOKEN);
@@ -121,6 +217,33 @@ class AuthServiceTest {
         assertEquals(REFRESH_TOKEN, response.getRefreshToken());
         assertEquals(USERNAME, response.getUsername());
         assertEquals(AUTHENTICATED, response.getAuthenticated());
+        verify(this.revocationService).consume(eq(JTI), any());
+    }
+
+    @Test
+    @DisplayName("When the refreshToken was already used it is rejected")
+    void refreshTokenReusedThenThrowAuthorizationException() {
+        when(this.userService.loadUserByUsername(USERNAME)).thenReturn(UserSnapshot.from(user, this.permissionRegistry));
+        when(this.tokenProvider.verifyRefreshToken(REFRESH_TOKEN)).thenReturn(decodedRefreshToken);
+        when(this.decodedRefreshToken.getSubject()).thenReturn(USERNAME);
+        when(this.decodedRefreshToken.getId()).thenReturn(JTI);
+        doThrow(new AuthorizationException(REFRESH_TOKEN_USED)).when(this.revocationService).consume(eq(JTI), any());
+
+        var exception = assertThrows(AuthorizationException.class,
+                () -> this.authService.refreshToken(USERNAME, REFRESH_TOKEN));
+
+        assertEquals(REFRESH_TOKEN_USED, exception.getMessage());
+        verify(this.tokenProvider, never()).createAccessToken(any(), any());
+    }
+
+    @Test
+    @DisplayName("When the refreshToken belongs to another user it is rejected")
+    void refreshTokenOtherUserThenThrowAuthorizationException() {
+        when(this.tokenProvider.verifyRefreshToken(REFRESH_TOKEN)).thenReturn(decodedRefreshToken);
+        when(this.decodedRefreshToken.getSubject()).thenReturn("other");
+
+        assertThrows(AuthorizationException.class, () -> this.authService.refreshToken(USERNAME, REFRESH_TOKEN));
+        verifyNoInteractions(this.revocationService);
     }
 
     private void startUser() {
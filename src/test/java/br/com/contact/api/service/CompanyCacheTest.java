@@ -0,0 +1,207 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.JacksonConfig;
+import br.com.contact.api.entity.model.request.CompanyRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyResponse;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import br.com.contact.api.service.exceptions.PreconditionFailedException;
+import br.com.contact.api.support.StatementCounter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "cache.companies.json.gzipMinSize=0B")
+@Import({CompanyService.class, CnpjRegistry.class, CompanyHierarchyService.class, CompanyGraphService.class,
+        CompanyCacheInvalidator.class, SingleFlightService.class, CompanyJsonService.class,
+        CompanyBatchRepository.class, CacheConfig.class, JacksonConfig.class, JacksonAutoConfiguration.class})
+class CompanyCacheTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private CompanyService companyService;
+    @Autowired
+    private CompanyJsonService companyJsonService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Cache<Object, Object> cache;
+    private Long parent;
+    private Long branch;
+    private int companies;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        this.cache = (Cache<Object, Object>) this.cacheManager.getCache(CacheConfig.COMPANIES).getNativeCache();
+        this.cache.invalidateAll();
+        this.branch = this.create();
+        this.parent = this.create(this.branch);
+        this.entityManager.flush();
+        this.entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("When a company is read twice the second read is served from the cache")
+    void findByIdTwiceThenHitCache() {
+        var first = this.findById(this.parent);
+
+        StatementCounter.assertAtMost(0, () -> assertSame(first, this.findById(this.parent)));
+        // The weight is recorded by the cache's maintenance, which otherwise runs asynchronously.
+        this.cache.cleanUp();
+        assertEquals(1, this.cache.estimatedSize());
+        assertTrue(this.cache.policy().eviction().orElseThrow().weightedSize().orElseThrow() > 0);
+        assertTrue(this.cache.stats().hitCount() >= 1);
+    }
+
+    @Test
+    @DisplayName("When a company is updated it and the companies having it as branch are read again")
+    void updateThenEvictCompanyAndParents() {
+        this.findById(this.parent);
+        this.findById(this.branch);
+
+        this.companyService.update(this.branch, new CompanyRequest("Renamed", "%014d".formatted(1),
+                new AddressResponse("Street", "São Paulo", "SP", 1), new HashSet<>()));
+
+        assertEquals(0, this.cache.estimatedSize());
+        assertEquals("Renamed", this.findById(this.branch).getName());
+        assertEquals(Set.of("Renamed"), this.branchNames(this.findById(this.parent)));
+    }
+
+    @Test
+    @DisplayName("When a company is deleted it is no longer found and its parents lose it as branch")
+    void deleteThenEvictCompanyAndParents() {
+        this.findById(this.parent);
+        this.findById(this.branch);
+
+        this.companyService.delete(this.branch);
+        this.entityManager.flush();
+        this.entityManager.clear();
+
+        assertThrows(ObjectNotFoundException.class, () -> this.findById(this.branch));
+        assertTrue(this.branchNames(this.findById(this.parent)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("When a company is serialized the cached bytes are its JSON, until it changes")
+    void findJsonThenCacheBytesUntilUpdate() throws Exception {
+        var json = this.companyJsonService.findById(this.branch);
+
+        assertSame(json, this.companyJsonService.findById(this.branch));
+        assertArrayEquals(this.objectMapper.writeValueAsBytes(this.findById(this.branch)), json.json());
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(json.gzip()))) {
+            assertArrayEquals(json.json(), gzip.readAllBytes());
+        }
+
+        this.companyService.update(this.branch, new CompanyRequest("Renamed", "%014d".formatted(1),
+                new AddressResponse("Street", "São Paulo", "SP", 1), new HashSet<>()));
+
+        var renamed = this.companyJsonService.findById(this.branch);
+        assertNotSame(json, renamed);
+        assertEquals("Renamed", this.objectMapper.readTree(renamed.json()).get("name").asText());
+    }
+
+    @Test
+    @DisplayName("When the cached response is older than the row the serialized bytes still match their version")
+    void findJsonAfterUnseenWriteThenBodyMatchesVersion() throws Exception {
+        var cached = this.companyService.findVersionedById(this.branch, ResponseShape.DEFAULT);
+        // A write from another instance whose invalidation has not arrived yet.
+        this.jdbcTemplate.update("UPDATE companies SET name = 'Elsewhere', version = version + 1 WHERE id = ?",
+                this.branch);
+        this.entityManager.clear();
+
+        var json = StatementCounter.capture(() -> this.companyJsonService.findById(this.branch));
+        var stale = this.companyJsonService.findById(this.branch);
+
+        assertTrue(json.isEmpty());
+        assertEquals(cached.version(), stale.version());
+        assertEquals(cached.value().getName(), this.objectMapper.readTree(stale.json()).get("name").asText());
+
+        this.cacheManager.getCache(CacheConfig.COMPANIES).evict(this.branch);
+        this.cacheManager.getCache(CacheConfig.COMPANIES_JSON).evict(this.branch);
+        var current = this.companyJsonService.findById(this.branch);
+
+        assertEquals(this.companyService.findVersion(this.branch), current.version());
+        assertEquals("Elsewhere", this.objectMapper.readTree(current.json()).get("name").asText());
+    }
+
+    @Test
+    @DisplayName("When a branch is updated its version and its parents' versions move, probed with one statement")
+    void updateThenIncrementVersionsOfCompanyAndParents() {
+        var json = this.companyJsonService.findById(this.parent);
+        var parentVersion = this.companyService.findVersion(this.parent);
+        var branchVersion = this.companyService.findVersion(this.branch);
+        assertEquals(parentVersion, json.version());
+
+        var updated = this.companyService.update(this.branch, new CompanyRequest("Renamed", "%014d".formatted(1),
+                new AddressResponse("Street", "São Paulo", "SP", 1), new HashSet<>()), List.of(branchVersion));
+        this.entityManager.flush();
+
+        assertEquals(this.companyService.findVersion(this.branch), updated.version());
+        StatementCounter.assertAtMost(1,
+                () -> assertTrue(this.companyService.findVersion(this.parent) > parentVersion));
+        assertTrue(this.companyService.findVersion(this.branch) > branchVersion);
+        assertTrue(this.companyJsonService.findById(this.parent).version() > parentVersion);
+        var request = new CompanyRequest("Company 2", "%014d".formatted(2),
+                new AddressResponse("Street", "São Paulo", "SP", 2), new HashSet<>());
+        assertThrows(PreconditionFailedException.class,
+                () -> this.companyService.update(this.parent, request, List.of(parentVersion)));
+    }
+
+    @Test
+    @DisplayName("When a company is read in another shape the cache is not used")
+    void findByIdWithOtherShapeThenSkipCache() {
+        this.companyService.findVersionedById(this.parent, new ResponseShape(Set.of(), 0));
+        this.companyService.findVersionedById(this.parent, new ResponseShape(Set.of(), 2));
+
+        assertEquals(0, this.cache.estimatedSize());
+    }
+
+    private CompanyResponse findById(Long id) {
+        return this.companyService.findVersionedById(id, ResponseShape.DEFAULT).value();
+    }
+
+    private Set<String> branchNames(CompanyResponse company) {
+        var names = new HashSet<String>();
+        company.getCompanyBranches().forEach(branch -> names.add(branch.getName()));
+        return names;
+    }
+
+    private Long create(Long... branches) {
+        var number = ++this.companies;
+        var companyBranches = new HashSet<CompanyResponse>();
+        for (var branch : branches) {
+            companyBranches.add(new CompanyResponse(branch, null, null, null, null));
+        }
+        return this.companyService.create(new CompanyRequest("Company " + number, "%014d".formatted(number),
+                new AddressResponse("Street", "São Paulo", "SP", number), companyBranches)).getId();
+    }
+}
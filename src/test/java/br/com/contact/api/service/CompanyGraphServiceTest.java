@@ -0,0 +1,138 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({CompanyGraphService.class, CompanyBatchRepository.class})
+class CompanyGraphServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private CompanyGraphService companyGraphService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Company root;
+    private Company branch;
+    private Company leaf;
+    private int companies;
+
+    @BeforeEach
+    void setUp() {
+        this.leaf = this.createCompany();
+        this.branch = this.createCompany(this.leaf);
+        this.root = this.createCompany(this.branch, this.leaf);
+        this.entityManager.flush();
+        this.companyGraphService.rebuild();
+    }
+
+    @Test
+    @DisplayName("When the graph is rebuilt it answers from the branch links in the database")
+    void rebuildThenAnswerFromLinks() {
+        var response = this.companyGraphService.findById(this.leaf.getId());
+
+        assertEquals(1, response.getDepth());
+        assertEquals(0, response.getSubtreeSize());
+        assertEquals(2, response.getAncestors());
+        assertEquals(2, this.companyGraphService.findById(this.root.getId()).getSubtreeSize());
+        assertEquals(0, this.companyGraphService.findById(this.root.getId()).getDepth());
+    }
+
+    @Test
+    @DisplayName("When asked about the whole graph it reports the roots, and a cycle once one is committed")
+    void summaryThenReportRootsAndCycle() {
+        var summary = this.companyGraphService.summary();
+
+        assertEquals(3, summary.getCompanies());
+        assertEquals(3, summary.getLinks());
+        assertEquals(List.of(this.root.getId()), summary.getRoots());
+        assertFalse(summary.getCyclic());
+        assertTrue(this.companyGraphService.findById(this.root.getId(), this.leaf.getId()).getReaches());
+        assertFalse(this.companyGraphService.findById(this.leaf.getId(), this.root.getId()).getReaches());
+        assertNull(this.companyGraphService.findById(this.leaf.getId()).getReaches());
+
+        TestTransaction.end();
+        this.companyGraphService.branchesChanged(this.leaf.getId(), this.root.getId());
+
+        assertTrue(this.companyGraphService.summary().getCyclic());
+        assertTrue(this.companyGraphService.summary().getRoots().isEmpty());
+    }
+
+    @Test
+    @DisplayName("When a change is rolled back the graph never shows it")
+    void rollbackThenKeepGraph() {
+        this.companyGraphService.removed(this.branch.getId());
+        this.companyGraphService.branchesChanged(this.leaf.getId(), this.root.getId());
+        assertEquals(1, this.companyGraphService.findById(this.leaf.getId()).getDepth());
+        TestTransaction.end();
+
+        assertEquals(1, this.companyGraphService.findById(this.leaf.getId()).getDepth());
+        assertEquals(2, this.companyGraphService.findById(this.leaf.getId()).getAncestors());
+        assertEquals(1, this.companyGraphService.findById(this.branch.getId()).getSubtreeSize());
+    }
+
+    @Test
+    @DisplayName("When a transaction makes several changes they are published together when it commits")
+    void changesInTransactionThenPublishOnCommit() {
+        TestTransaction.end();
+        var transaction = new TransactionTemplate(this.transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            this.companyGraphService.removed(this.branch.getId());
+            this.companyGraphService.branchesChanged(this.root.getId(), this.leaf.getId());
+            this.companyGraphService.branchesChanged(this.leaf.getId());
+            assertEquals(2, this.companyGraphService.findById(this.root.getId()).getSubtreeSize());
+        });
+
+        assertThrows(ObjectNotFoundException.class, () -> this.companyGraphService.findById(this.branch.getId()));
+        assertEquals(1, this.companyGraphService.findById(this.root.getId()).getSubtreeSize());
+        assertEquals(1, this.companyGraphService.findById(this.leaf.getId()).getAncestors());
+    }
+
+    @Test
+    @DisplayName("When a change is made outside a transaction it is published at once")
+    void changeWithoutTransactionThenPublish() {
+        TestTransaction.end();
+
+        this.companyGraphService.branchesChanged(this.leaf.getId(), this.root.getId());
+
+        assertEquals(-1, this.companyGraphService.findById(this.leaf.getId()).getDepth());
+    }
+
+    @Test
+    @DisplayName("When the company is not in the graph it throws not found")
+    void unknownCompanyThenThrowNotFound() {
+        assertThrows(ObjectNotFoundException.class, () -> this.companyGraphService.findById(999L));
+    }
+
+    private Company createCompany(Company... branches) {
+        var number = ++this.companies;
+        var company = new Company(null, "Company " + number, "%014d".formatted(number),
+                new Address("Street", "São Paulo", "SP", number), new HashSet<>(), 0);
+        for (var branch : branches) {
+            company.getCompanyBranches().add(branch);
+        }
+        return this.entityManager.persist(company);
+    }
+}
@@ -0,0 +1,240 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.entity.model.request.CompanyRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyHierarchyResponse;
+import br.com.contact.api.entity.model.response.CompanyResponse;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.service.exceptions.DataIntegrityViolationException;
+import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import br.com.contact.api.support.StatementCounter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Builds deep and wide hierarchies through {@link CompanyService}, so the closure table is maintained the way
+ * the API maintains it, and checks every read against the shape that was built.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({CompanyService.class, CnpjRegistry.class, CompanyHierarchyService.class, CompanyGraphService.class,
+        CompanyCacheInvalidator.class, SingleFlightService.class, CompanyBatchRepository.class, CacheConfig.class})
+class CompanyHierarchyServiceTest {
+
+    private static final int DEPTH = 40;
+    private static final int WIDTH = 30;
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CompanyService companyService;
+    @Autowired
+    private CompanyHierarchyService companyHierarchyService;
+
+    private int companies;
+
+    @Test
+    @DisplayName("When the hierarchy is a long chain every level is found with its depth")
+    void deepHierarchyThenFindEveryLevel() {
+        var chain = this.createChain(DEPTH);
+        var top = chain.get(chain.size() - 1);
+        var bottom = chain.get(0);
+
+        var descendants = this.read(() -> this.companyHierarchyService.findDescendants(top));
+        var ancestors = this.read(() -> this.companyHierarchyService.findAncestors(bottom));
+
+        var downwards = new ArrayList<>(chain.subList(0, DEPTH - 1));
+        Collections.reverse(downwards);
+        assertEquals(downwards, ids(descendants));
+        assertEquals(IntStream.rangeClosed(1, DEPTH - 1).boxed().toList(), depths(descendants));
+        assertEquals(chain.subList(1, DEPTH), ids(ancestors));
+        assertEquals(List.of(chain.get(DEPTH - 2)), ids(this.companyHierarchyService.findChildren(top)));
+        assertEquals(DEPTH * (DEPTH - 1) / 2, this.countRows());
+    }
+
+    @Test
+    @DisplayName("When the hierarchy is wide the children and grandchildren are found, each at its shortest depth")
+    void wideHierarchyThenFindChildrenAndDescendants() {
+        var children = new ArrayList<Long>();
+        var grandchildren = new ArrayList<Long>();
+        for (int i = 0; i < WIDTH; i++) {
+            var leaves = List.of(this.create(), this.create());
+            grandchildren.addAll(leaves);
+            children.add(this.create(leaves.toArray(Long[]::new)));
+        }
+        var branches = new ArrayList<>(children);
+        branches.add(grandchildren.get(0));
+        var root = this.create(branches.toArray(Long[]::new));
+
+        var found = this.read(() -> this.companyHierarchyService.findChildren(root));
+        var descendants = this.companyHierarchyService.findDescendants(root);
+
+        assertEquals(WIDTH + 1, found.size());
+        assertTrue(ids(found).containsAll(children));
+        assertEquals(3 * WIDTH, descendants.size());
+        assertEquals(WIDTH + 1, depths(descendants).stream().filter(depth -> depth == 1).count());
+        assertEquals(List.of(root), this.companyService.findAllDistinctId().stream().map(CompanyResponse::getId)
+                .toList());
+    }
+
+    @Test
+    @DisplayName("When a branch is moved or a company deleted the hierarchy follows")
+    void changeBranchesThenRefreshHierarchy() {
+        var chain = this.createChain(5);
+        var other = this.create();
+
+        // Move the bottom two companies under another root.
+        this.update(chain.get(2));
+        this.update(other, chain.get(1));
+
+        assertEquals(List.of(chain.get(3), chain.get(2)),
+                ids(this.companyHierarchyService.findDescendants(chain.get(4))));
+        assertEquals(List.of(chain.get(1), chain.get(0)), ids(this.companyHierarchyService.findDescendants(other)));
+        assertEquals(List.of(other), ids(this.companyHierarchyService.findAncestors(chain.get(1))));
+
+        this.companyService.delete(chain.get(3));
+        this.entityManager.flush();
+
+        assertTrue(this.companyHierarchyService.findDescendants(chain.get(4)).isEmpty());
+        assertTrue(this.companyHierarchyService.findAncestors(chain.get(2)).isEmpty());
+        assertEquals(0, this.jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM company_branches WHERE company_branch_id = ?", Integer.class, chain.get(3)));
+        assertEquals(3, this.companyService.findAllDistinctId().size());
+    }
+
+    @Test
+    @DisplayName("When branches shared by several companies change only their rows are rewritten, as a rebuild would")
+    void changeSharedBranchesThenMatchFullRebuild() {
+        // top -> a -> b -> c, top -> c and other -> b
+        var chain = this.createChain(3);
+        var top = this.create(chain.get(2), chain.get(0));
+        var other = this.create(chain.get(1));
+        var all = new ArrayList<>(chain);
+        all.addAll(List.of(top, other));
+
+        assertEquals(1, depths(this.companyHierarchyService.findDescendants(top)).get(0));
+        List<Runnable> changes = List.of(
+                () -> this.update(top, chain.get(2)),
+                () -> this.update(chain.get(2)),
+                () -> this.update(top, chain.get(2), chain.get(1)),
+                () -> this.update(chain.get(2), chain.get(1), chain.get(0)),
+                () -> this.update(other));
+        for (var change : changes) {
+            change.run();
+            this.entityManager.flush();
+            var rows = this.rows();
+            this.companyHierarchyService.refresh(all);
+            assertEquals(this.rows(), rows);
+        }
+        assertEquals(List.of(chain.get(1), chain.get(2), chain.get(0)),
+                ids(this.companyHierarchyService.findDescendants(top)));
+        assertEquals(List.of(1, 1, 2), depths(this.companyHierarchyService.findDescendants(top)));
+        assertTrue(this.companyHierarchyService.findDescendants(other).isEmpty());
+    }
+
+    @Test
+    @DisplayName("When branches would put a company below itself the update is rejected with one query")
+    void cyclicBranchesThenThrowDataIntegrityViolation() {
+        var chain = this.createChain(DEPTH);
+        var bottom = chain.get(0);
+        var top = chain.get(DEPTH - 1);
+
+        var exception = assertThrows(DataIntegrityViolationException.class, () -> this.update(bottom, top));
+        assertEquals("Company branches would create a cycle: [%d]".formatted(top), exception.getMessage());
+        assertThrows(DataIntegrityViolationException.class, () -> this.update(top, top));
+        StatementCounter.assertAtMost(1, () -> assertThrows(DataIntegrityViolationException.class,
+                () -> this.companyHierarchyService.verifyAcyclic(bottom, List.of(chain.get(1), top))));
+
+        this.update(top, chain.get(DEPTH - 2), bottom);
+        assertEquals(List.of(bottom, chain.get(DEPTH - 2)), ids(this.companyHierarchyService.findChildren(top)));
+    }
+
+    @Test
+    @DisplayName("When the company does not exist the hierarchy reads throw not found")
+    void unknownCompanyThenThrowNotFound() {
+        var leaf = this.create();
+
+        assertTrue(this.companyHierarchyService.findDescendants(leaf).isEmpty());
+        assertThrows(ObjectNotFoundException.class, () -> this.companyHierarchyService.findChildren(999L));
+        assertThrows(ObjectNotFoundException.class, () -> this.companyHierarchyService.findAncestors(999L));
+    }
+
+    /**
+     * Companies where each one has the previous as branch; the last one is the root.
+     */
+    private List<Long> createChain(int length) {
+        var chain = new ArrayList<Long>();
+        chain.add(this.create());
+        while (chain.size() < length) {
+            chain.add(this.create(chain.get(chain.size() - 1)));
+        }
+        return chain;
+    }
+
+    private Long create(Long... branches) {
+        var number = ++this.companies;
+        return this.companyService.create(new CompanyRequest("Company %03d".formatted(number),
+                "%014d".formatted(number), new AddressResponse("Street", "São Paulo", "SP", number),
+                branches(branches))).getId();
+    }
+
+    private void update(Long id, Long... branches) {
+        var company = this.companyService.findById(id);
+        this.companyService.update(id, new CompanyRequest(company.getName(), company.getCnpj(), company.getAddress(),
+                branches(branches)));
+    }
+
+    /**
+     * Runs a read on a clean persistence context and checks it is a single statement.
+     */
+    private List<CompanyHierarchyResponse> read(Supplier<List<CompanyHierarchyResponse>> read) {
+        this.entityManager.flush();
+        this.entityManager.clear();
+        var result = new ArrayList<CompanyHierarchyResponse>();
+        StatementCounter.assertAtMost(1, () -> result.addAll(read.get()));
+        return result;
+    }
+
+    private List<String> rows() {
+        return this.jdbcTemplate.queryForList("SELECT ancestor_id || '>' || descendant_id || ':' || depth "
+                + "FROM company_hierarchy ORDER BY ancestor_id, descendant_id", String.class);
+    }
+
+    private int countRows() {
+        return this.jdbcTemplate.queryForObject("SELECT count(*) FROM company_hierarchy", Integer.class);
+    }
+
+    private static HashSet<CompanyResponse> branches(Long... ids) {
+        var branches = new HashSet<CompanyResponse>();
+        for (var id : ids) {
+            branches.add(new CompanyResponse(id, null, null, null, null));
+        }
+        return branches;
+    }
+
+    private static List<Long> ids(List<CompanyHierarchyResponse> companies) {
+        return companies.stream().map(CompanyHierarchyResponse::getId).toList();
+    }
+
+    private static List<Integer> depths(List<CompanyHierarchyResponse> companies) {
+        return companies.stream().map(CompanyHierarchyResponse::getDepth).toList();
+    }
+}
@@ -0,0 +1,193 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.model.response.ImportErrorResponse;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.service.exceptions.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({CompanyImportService.class, CnpjRegistry.class, CompanyHierarchyService.class, CompanyGraphService.class,
+        CompanyBatchRepository.class, JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+class CompanyImportServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CompanyImportService companyImportService;
+
+    private Company existing;
+
+    @BeforeEach
+    void setUp() {
+        this.existing = this.entityManager.persist(new Company(null, "Existing", cnpj(1),
+                new Address("Street", "São Paulo", "SP", 1), new HashSet<>(), 0));
+        this.entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("When a JSON array is imported the valid rows are inserted and the others reported")
+    void importJsonThenInsertValidRowsAndReportOthers() throws Exception {
+        var json = """
+                [
+                  {"name": "Parent", "cnpj": "%s", "address": {"city": "Santos", "zip": 11000}, "branches": ["%s", "%s"]},
+                  {"name": "Branch", "cnpj": "%s"},
+                  {"name": "Invalid", "cnpj": "11111111111111"},
+                  {"name": "Repeated", "cnpj": "%s"},
+                  {"name": "Registered", "cnpj": "%s"},
+                  {"name": "Orphan", "cnpj": "%s", "branches": ["%s"]}
+                ]
+                """.formatted(cnpj(2), cnpj(3), cnpj(1), cnpj(3), cnpj(3), cnpj(1), cnpj(4), cnpj(99));
+
+        var response = this.companyImportService.importJson(body(json));
+
+        assertEquals(3, response.getImported());
+        assertEquals(2, response.getLinked());
+        assertEquals(List.of(3L, 4L, 5L, 6L), response.getErrors().stream().map(ImportErrorResponse::getRow).toList());
+        assertEquals("The CPNJ invalid.", response.getErrors().get(0).getMessage());
+        assertEquals("CNPJ already exist.", response.getErrors().get(1).getMessage());
+        assertEquals("CNPJ already exist.", response.getErrors().get(2).getMessage());
+        assertEquals("Company branch not found: " + cnpj(99), response.getErrors().get(3).getMessage());
+
+        var parent = this.idOf(cnpj(2));
+        assertEquals(List.of(this.existing.getId(), this.idOf(cnpj(3))), this.jdbcTemplate.queryForList(
+                "SELECT company_branch_id FROM company_branches WHERE company_id = ? ORDER BY company_branch_id",
+                Long.class, parent));
+        assertEquals("Santos", this.jdbcTemplate.queryForObject("SELECT city FROM companies WHERE id = ?",
+                String.class, parent));
+    }
+
+    @Test
+    @DisplayName("When a JSON row has the wrong type it is reported and the following rows are imported")
+    void importJsonWithMalformedRowThenContinue() throws Exception {
+        var json = """
+                {"name": "Broken", "cnpj": "%s", "address": {"zip": "not a number"}}
+                {"name": "Fine", "cnpj": "%s"}
+                """.formatted(cnpj(2), cnpj(3));
+
+        var response = this.companyImportService.importJson(body(json));
+
+        assertEquals(1, response.getImported());
+        assertEquals(1, response.getErrors().size());
+        assertEquals(1, response.getErrors().get(0).getRow());
+        assertEquals("Malformed row.", response.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    @DisplayName("When a CSV file is imported quoted fields, formatted CNPJs and branch lists are understood")
+    void importCsvThenParseRows() {
+        var formatted = cnpj(2).replaceFirst("(\\d{2})(\\d{3})(\\d{3})(\\d{4})(\\d{2})", "$1.$2.$3/$4-$5");
+        var csv = "id,name,cnpj,street,city,state,zip,branches\r\n"
+                + "7,\"Acme, \"\"Inc\"\"\"," + formatted + ",\"Line 1\nLine 2\",Santos,SP,11000,"
+                + cnpj(3) + ";" + cnpj(1) + "\r\n"
+                + ",Branch," + cnpj(3) + ",,,,,\r\n"
+                + ",Bad zip," + cnpj(4) + ",,,,abc,\r\n";
+
+        var response = this.companyImportService.importCsv(body(csv));
+
+        assertEquals(2, response.getImported());
+        assertEquals(2, response.getLinked());
+        assertEquals(1, response.getErrors().size());
+        assertEquals("Invalid zip: abc", response.getErrors().get(0).getMessage());
+        var id = this.idOf(cnpj(2));
+        assertNotEquals(7L, id);
+        assertEquals("Acme, \"Inc\"", this.jdbcTemplate.queryForObject("SELECT name FROM companies WHERE id = ?",
+                String.class, id));
+        assertEquals("Line 1\nLine 2", this.jdbcTemplate.queryForObject("SELECT street FROM companies WHERE id = ?",
+                String.class, id));
+    }
+
+    @Test
+    @DisplayName("When imported rows name each other as branches the link closing the cycle is rejected")
+    void importCyclicBranchesThenReportCycle() throws Exception {
+        var json = """
+                {"name": "A", "cnpj": "%s", "branches": ["%s"]}
+                {"name": "B", "cnpj": "%s", "branches": ["%s"]}
+                {"name": "C", "cnpj": "%s", "branches": ["%s"]}
+                """.formatted(cnpj(2), cnpj(3), cnpj(3), cnpj(4), cnpj(4), cnpj(2));
+
+        var response = this.companyImportService.importJson(body(json));
+
+        assertEquals(3, response.getImported());
+        assertEquals(2, response.getLinked());
+        assertEquals(1, response.getErrors().size());
+        assertEquals(3, response.getErrors().get(0).getRow());
+        assertEquals("Company branches would create a cycle: " + cnpj(2), response.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    @DisplayName("When more rows than one chunk are imported every row and link is written")
+    void importManyRowsThenWriteAllChunks() {
+        var csv = new StringBuilder("name,cnpj,branches\n");
+        for (int i = 10; i < 2510; i++) {
+            csv.append("Company ").append(i).append(',').append(cnpj(i)).append(',')
+                    .append(i % 10 > 0 ? cnpj(i - 1) : "").append('\n');
+        }
+
+        var response = this.companyImportService.importCsv(body(csv.toString()));
+
+        assertEquals(2500, response.getImported());
+        assertEquals(2250, response.getLinked());
+        assertTrue(response.getErrors().isEmpty());
+        assertEquals(2501, this.jdbcTemplate.queryForObject("SELECT count(*) FROM companies", Integer.class));
+        assertEquals(250 * 45, this.jdbcTemplate.queryForObject("SELECT count(*) FROM company_hierarchy",
+                Integer.class));
+    }
+
+    @Test
+    @DisplayName("When the CSV header lacks the CNPJ column the import is rejected")
+    void importCsvWithoutCnpjColumnThenThrowBadRequest() {
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.companyImportService.importCsv(body("name,city\nAcme,Santos\n")));
+
+        assertEquals("The CSV header must contain name and cnpj.", exception.getMessage());
+    }
+
+    private Long idOf(String cnpj) {
+        return this.jdbcTemplate.queryForObject("SELECT id FROM companies WHERE cnpj = ?", Long.class, cnpj);
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A valid CNPJ for the given branch number.
+     */
+    private static String cnpj(int number) {
+        var digits = "11222333%04d".formatted(number);
+        digits += checkDigit(digits);
+        return digits + checkDigit(digits);
+    }
+
+    private static int checkDigit(String digits) {
+        var sum = 0;
+        for (int i = digits.length() - 1, weight = 2; i >= 0; i--, weight = weight == 9 ? 2 : weight + 1) {
+            sum += (digits.charAt(i) - '0') * weight;
+        }
+        var remainder = sum % 11;
+        return remainder < 2 ? 0 : 11 - remainder;
+    }
+}
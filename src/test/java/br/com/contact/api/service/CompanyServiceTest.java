@@ -6,8 +6,10 @@ import br.com.contact.api.entity.model.request.CompanyRequest;
 import br.com.contact.api.entity.model.response.AddressResponse;
 import br.com.contact.api.entity.model.response.CompanyResponse;
 import br.com.contact.api.repository.CompanyRepository;
+import br.com.contact.api.service.exceptions.BadRequestException;
 import br.com.contact.api.service.exceptions.DataIntegrityViolationException;
 import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import br.com.contact.api.service.exceptions.PreconditionFailedException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,12 +17,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -50,6 +55,16 @@ class CompanyServiceTest {
     private CompanyService companyService;
     @Mock
     private CompanyRepository companyRepository;
+    @Mock
+    private CnpjRegistry cnpjRegistry;
+    @Mock
+    private CompanyHierarchyService companyHierarchyService;
+    @Mock
+    private CompanyGraphService companyGraphService;
+    @Mock
+    private CompanyCacheInvalidator companyCacheInvalidator;
+    @Mock
+    private SingleFlightService singleFlightService;
 
     private CompanyRequest companyRequest;
     private Company company;
@@ -61,6 +76,13 @@ class CompanyServiceTest {
         MockitoAnnotations.openMocks(this);
         this.startCompany();
         this.startCompanyRequest();
+        when(this.companyRepository.getReferenceById(anyLong())).thenAnswer(invocation -> {
+            var reference = new Company();
+            reference.setId(invocation.getArgument(0));
+            return reference;
+        });
+        when(this.singleFlightService.load(anyString(), any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(2).get());
     }
 
     @Test
@@ -119,11 +141,39 @@ class CompanyServiceTest {
         }
     }
 
+    @Test
+    @DisplayName("When the cursor page is full the next cursor seeks after its last company")
+    void findAllByCursorThenReturnNextCursor() {
+        var branch = company.getCompanyBranches().iterator().next();
+        when(this.companyRepository.findFirstOrderByNameAsc(2)).thenReturn(List.of(company, branch));
+        when(this.companyRepository.findNextOrderByNameAsc(NAME, COMPANY_ID, 2)).thenReturn(List.of(branch));
+
+        var first = this.companyService.findAllByCursor(null, 1, false);
+        var second = this.companyService.findAllByCursor(first.getNext(), 1, true);
+
+        assertEquals(1, first.getContent().size());
+        assertEquals(COMPANY_ID, first.getContent().get(0).getId());
+        assertNotNull(first.getNext());
+        assertEquals(COMPANY_BRANCH_ID, second.getContent().get(0).getId());
+        assertNull(second.getNext());
+        verify(this.companyRepository, never()).count();
+    }
+
+    @Test
+    @DisplayName("When the cursor is not one the API issued returns BadRequestException")
+    void findAllByCursorThenReturnBadRequestException() {
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.companyService.findAllByCursor("not-a-cursor", 12, false));
+
+        assertEquals("Invalid cursor.", exception.getMessage());
+        verifyNoInteractions(this.companyRepository);
+    }
+
     @Test
     @DisplayName("When the company is created successfully")
     void createCompanyThenReturnSuccess() {
         when(this.companyRepository.save(any())).thenReturn(company);
-        when(this.companyRepository.findById(anyLong())).thenReturn(Optional.of(company));
+        when(this.companyRepository.findExistingIds(anyCollection())).thenReturn(List.of(COMPANY_BRANCH_ID));
 
         CompanyResponse response = this.companyService.create(companyRequest);
 
@@ -134,28 +184,87 @@ class CompanyServiceTest {
         assertEquals(COMPANY_ID, response.getId());
         assertEquals(NAME, response.getName());
         assertEquals(CNPJ, response.getCnpj());
+        verify(this.companyGraphService, times(1)).branchesChanged(COMPANY_ID, COMPANY_BRANCH_ID);
+        verify(this.companyCacheInvalidator, times(1)).evict(COMPANY_ID);
     }
 
     @Test
     @DisplayName("When the company is created DataIntegrityViolationException")
     void createCompanyThenReturnDataIntegrityViolationException() {
-        when(this.companyRepository.findByCnpj(anyString())).thenReturn(Optional.of(company));
+        when(this.cnpjRegistry.mightExist(CNPJ)).thenReturn(true);
+        when(this.companyRepository.existsByCnpj(CNPJ)).thenReturn(true);
 
-        try {
-            Optional.of(company).get().setId(2L);
-            this.companyService.create(companyRequest);
-        } catch (Exception e) {
-            assertEquals(DataIntegrityViolationException.class, e.getClass());
-            assertEquals(CNPJ_ALREADY_EXIST, e.getMessage());
-        }
+        var exception = assertThrows(DataIntegrityViolationException.class,
+                () -> this.companyService.create(companyRequest));
+
+        assertEquals(CNPJ_ALREADY_EXIST, exception.getMessage());
+        verify(this.companyRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("When the CNPJ was never registered the create skips the database probe")
+    void createCompanyWithUnseenCnpjThenSkipProbe() {
+        companyRequest.setCnpj("33.333.749/0001-00");
+        when(this.companyRepository.findExistingIds(anyCollection())).thenReturn(List.of(COMPANY_BRANCH_ID));
+        when(this.companyRepository.save(any(Company.class))).thenAnswer(invocation -> {
+            Company saved = invocation.getArgument(0);
+            saved.setId(COMPANY_ID);
+            return saved;
+        });
+
+        var response = this.companyService.create(companyRequest);
+
+        assertEquals(CNPJ, response.getCnpj());
+        verify(this.cnpjRegistry).mightExist(CNPJ);
+        verify(this.cnpjRegistry).register(CNPJ);
+        verify(this.companyRepository, never()).existsByCnpj(anyString());
+    }
+
+    @Test
+    @DisplayName("When the company has many branches they are validated with a single query")
+    void createCompanyWithManyBranchesThenQueryOnce() {
+        var branchIds = LongStream.rangeClosed(2, 501).boxed().toList();
+        companyRequest.setCompanyBranches(branchIds.stream()
+                .map(id -> new CompanyResponse(id, null, null, null, null))
+                .collect(Collectors.toSet()));
+        when(this.companyRepository.findExistingIds(anyCollection())).thenReturn(branchIds);
+        when(this.companyRepository.getReferenceById(anyLong())).thenAnswer(invocation ->
+                new Company(invocation.getArgument(0), null, null, null, new HashSet<>(), 0));
+        when(this.companyRepository.save(any(Company.class))).thenAnswer(invocation -> {
+            Company saved = invocation.getArgument(0);
+            saved.setId(COMPANY_ID);
+            return saved;
+        });
+
+        CompanyResponse response = this.companyService.create(companyRequest);
+
+        assertEquals(500, response.getCompanyBranches().size());
+        verify(this.companyRepository, times(1)).findExistingIds(anyCollection());
+        verify(this.companyRepository, never()).findById(anyLong());
+        verify(this.companyRepository, never()).findAllById(any());
+    }
+
+    @Test
+    @DisplayName("When some branches do not exist all missing ids are reported at once")
+    void createCompanyWithMissingBranchesThenReturnObjectNotFoundException() {
+        companyRequest.setCompanyBranches(Set.of(new CompanyResponse(2L, null, null, null, null),
+                new CompanyResponse(3L, null, null, null, null), new CompanyResponse(4L, null, null, null, null)));
+        when(this.companyRepository.findExistingIds(anyCollection())).thenReturn(List.of(3L));
+
+        var exception = assertThrows(ObjectNotFoundException.class, () -> this.companyService.create(companyRequest));
+
+        assertTrue(exception.getMessage().contains("2"));
+        assertTrue(exception.getMessage().contains("4"));
+        assertFalse(exception.getMessage().contains("3"));
+        verify(this.companyRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("When the company is updated successfully")
     void updateCompanyThenReturnSuccess() {
-        when(this.companyRepository.findById(anyLong())).thenReturn(Optional.of(company));
-
+        when(this.companyRepository.findById(COMPANY_ID)).thenReturn(Optional.of(company));
         when(this.companyRepository.save(any(Company.class))).thenReturn(company);
+        when(this.companyHierarchyService.findParentIds(COMPANY_ID)).thenReturn(List.of(3L));
 
         CompanyResponse response = this.companyService.update(COMPANY_ID, companyRequest);
 
@@ -166,22 +275,88 @@ class CompanyServiceTest {
         assertEquals(COMPANY_ID, response.getId());
         assertEquals(NAME, response.getName());
         assertEquals(CNPJ, response.getCnpj());
+        verify(this.companyRepository, times(1)).incrementVersions(List.of(3L));
+        verify(this.companyCacheInvalidator, times(1)).evict(List.of(COMPANY_ID, 3L));
+        // The branches are the ones the company already had, so they are neither checked nor propagated.
+        verify(this.companyRepository, never()).findExistingIds(anyCollection());
+        verify(this.companyHierarchyService, never()).branchesChanged(any(), any(), any());
+        verifyNoInteractions(this.companyGraphService);
+    }
+
+    @Test
+    @DisplayName("When the branches change the hierarchy and the graph get the old and the new ones")
+    void updateCompanyWithOtherBranchesThenPropagateChange() {
+        companyRequest.setCompanyBranches(Set.of(new CompanyResponse(3L, null, null, null, null)));
+        when(this.companyRepository.findById(COMPANY_ID)).thenReturn(Optional.of(company));
+        when(this.companyRepository.findExistingIds(anyCollection())).thenReturn(List.of(3L));
+        when(this.companyRepository.save(any(Company.class))).thenReturn(company);
+
+        this.companyService.update(COMPANY_ID, companyRequest);
+
+        verify(this.companyHierarchyService).verifyAcyclic(COMPANY_ID, Set.of(3L));
+        verify(this.companyHierarchyService).branchesChanged(COMPANY_ID, Set.of(COMPANY_BRANCH_ID), Set.of(3L));
+        verify(this.companyGraphService).branchesChanged(COMPANY_ID, 3L);
+    }
+
+    @Test
+    @DisplayName("When the company changed since the version in If-Match the update fails its precondition")
+    void updateCompanyWithOtherVersionThenReturnPreconditionFailed() {
+        company.setVersion(2);
+        when(this.companyRepository.findById(COMPANY_ID)).thenReturn(Optional.of(company));
+
+        var exception = assertThrows(PreconditionFailedException.class,
+                () -> this.companyService.update(COMPANY_ID, companyRequest, List.of(1L)));
+
+        assertEquals("Company 1 was changed, its version is 2.", exception.getMessage());
+        assertEquals(NAME, company.getName());
+        verify(this.companyRepository, never()).save(any());
+        verifyNoInteractions(this.companyCacheInvalidator);
     }
 
     @Test
     @DisplayName("When the company is updated DataIntegrityViolationException")
     void updateCompanyThenReturnDataIntegrityViolationException() {
-        when(this.companyRepository.findByCnpj(anyString())).thenReturn(Optional.of(company));
+        companyRequest.setCnpj(COMPANY_BRANCH_CNPJ);
+        when(this.companyRepository.findById(COMPANY_ID)).thenReturn(Optional.of(company));
+        when(this.cnpjRegistry.mightExist(COMPANY_BRANCH_CNPJ)).thenReturn(true);
+        when(this.companyRepository.existsByCnpjAndIdNot(COMPANY_BRANCH_CNPJ, COMPANY_ID)).thenReturn(true);
 
-        try {
-            Optional.of(company).get().setId(2L);
-            this.companyService.update(COMPANY_ID, companyRequest);
-        } catch (Exception e) {
-            assertEquals(ObjectNotFoundException.class, e.getClass());
-            assertEquals(OBJECT_NOT_FOUND + " Id: " + COMPANY_ID + " Type " + Company.class.getSimpleName(), e.getMessage());
-        }
+        var exception = assertThrows(DataIntegrityViolationException.class,
+                () -> this.companyService.update(COMPANY_ID, companyRequest));
+
+        assertEquals(CNPJ_ALREADY_EXIST, exception.getMessage());
+        assertEquals(CNPJ, company.getCnpj());
+        verify(this.companyRepository, never()).save(any());
     }
 
+    @Test
+    @DisplayName("When the branches would create a cycle the company is not saved")
+    void updateCompanyWithCyclicBranchesThenReturnDataIntegrityViolationException() {
+        companyRequest.setCompanyBranches(Set.of(new CompanyResponse(3L, null, null, null, null)));
+        when(this.companyRepository.findById(COMPANY_ID)).thenReturn(Optional.of(company));
+        when(this.companyRepository.findExistingIds(anyCollection())).thenReturn(List.of(3L));
+        doThrow(new DataIntegrityViolationException("Company branches would create a cycle: [3]"))
+                .when(this.companyHierarchyService).verifyAcyclic(eq(COMPANY_ID), anyCollection());
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> this.companyService.update(COMPANY_ID, companyRequest));
+
+        verify(this.companyRepository, never()).save(any());
+        verifyNoInteractions(this.companyCacheInvalidator);
+    }
+
+    @Test
+    @DisplayName("When the company keeps its CNPJ the update does not check it")
+    void updateCompanyWithSameCnpjThenSkipCheck() {
+        when(this.companyRepository.findById(COMPANY_ID)).thenReturn(Optional.of(company));
+        when(this.companyRepository.findExistingIds(anyCollection())).thenReturn(List.of(COMPANY_BRANCH_ID));
+        when(this.companyRepository.save(any(Company.class))).thenReturn(company);
+
+        this.companyService.update(COMPANY_ID, companyRequest);
+
+        verify(this.cnpjRegistry, never()).mightExist(anyString());
+        verify(this.companyRepository, never()).existsByCnpjAndIdNot(anyString(), anyLong());
+    }
 
     @Test
     @DisplayName("When the company is deleted successfully")
@@ -189,7 +364,10 @@ class CompanyServiceTest {
         when(this.companyRepository.findById(anyLong())).thenReturn(Optional.of(company));
         doNothing().when(this.companyRepository).deleteById(anyLong());
         this.companyService.delete(COMPANY_ID);
+        verify(this.companyHierarchyService, times(1)).remove(COMPANY_ID);
         verify(this.companyRepository, times(1)).deleteById(anyLong());
+        verify(this.companyGraphService, times(1)).removed(COMPANY_ID);
+        verify(this.companyCacheInvalidator, times(1)).evict(List.of(COMPANY_ID));
     }
 
     @Test
@@ -0,0 +1,95 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ExportService.class, JacksonAutoConfiguration.class})
+class ExportServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        this.entityManager.persist(new Company(null, "Plain", "33333749000100",
+                new Address("123 Main St", "São Paulo", "SP", 12345), new HashSet<>(), 0));
+        this.entityManager.persist(
+                new Company(null, "Acme, \"Inc\"", "14171534000195", null, new HashSet<>(), 0));
+
+        var user = new User();
+        user.setFullname("Admin");
+        user.setUsername("admin");
+        user.setPassword("secret-hash");
+        user.setEnabled(true);
+        this.entityManager.persist(user);
+        this.entityManager.flush();
+        this.entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("When companies are exported as NDJSON each row is one JSON object per line")
+    void exportCompaniesNdjsonThenOneObjectPerLine() throws Exception {
+        var out = new ByteArrayOutputStream();
+
+        var count = this.exportService.exportCompanies(ExportFormat.NDJSON, out);
+
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        var first = this.objectMapper.readTree(lines[0]);
+        assertEquals("Plain", first.get("name").asText());
+        assertEquals("São Paulo", first.get("city").asText());
+        assertEquals(12345, first.get("zip").asInt());
+        assertTrue(this.objectMapper.readTree(lines[1]).get("street").isNull());
+    }
+
+    @Test
+    @DisplayName("When companies are exported as CSV fields with separators or quotes are quoted")
+    void exportCompaniesCsvThenQuoteFields() throws Exception {
+        var out = new ByteArrayOutputStream();
+
+        this.exportService.exportCompanies(ExportFormat.CSV, out);
+
+        var lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals("id,name,cnpj,street,city,state,zip", lines[0]);
+        assertTrue(lines[1].endsWith(",Plain,33333749000100,123 Main St,São Paulo,SP,12345"));
+        assertTrue(lines[2].endsWith(",\"Acme, \"\"Inc\"\"\",14171534000195,,,,"));
+    }
+
+    @Test
+    @DisplayName("When users are exported the password is left out")
+    void exportUsersThenOmitPassword() throws Exception {
+        var out = new ByteArrayOutputStream();
+
+        var count = this.exportService.exportUsers(ExportFormat.CSV, out);
+
+        var text = out.toString(StandardCharsets.UTF_8);
+        assertEquals(1, count);
+        assertTrue(text.startsWith("id,fullname,username,accountNonExpired,accountNonLocked,credentialsNonExpired,enabled\r\n"));
+        assertTrue(text.contains(",Admin,admin,"));
+        assertFalse(text.contains("secret-hash"));
+    }
+}
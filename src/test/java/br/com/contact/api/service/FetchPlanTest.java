@@ -0,0 +1,160 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.config.security.jwt.TokenVersionRegistry;
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashSet;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Read paths must load a constant number of statements however many rows they map.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({CompanyService.class, CnpjRegistry.class, CompanyHierarchyService.class, CompanyGraphService.class,
+        CompanyCacheInvalidator.class, SingleFlightService.class, CompanyBatchRepository.class, UserService.class,
+        TokenVersionRegistry.class, PermissionRegistry.class, CacheConfig.class})
+class FetchPlanTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CompanyService companyService;
+    @Autowired
+    private UserService userService;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+
+    private Statistics statistics;
+    private int companies;
+    private int users;
+
+    @BeforeEach
+    void setUp() {
+        this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @DisplayName("When companies with nested branches are listed the statement count does not grow with them")
+    void findAllCompaniesThenConstantStatements() {
+        this.createCompanyTrees(2);
+        var few = this.countStatements(() -> this.companyService.findAll().size());
+        this.createCompanyTrees(10);
+        var many = this.countStatements(() -> this.companyService.findAll().size());
+
+        assertEquals(few, many);
+        assertTrue(many <= 4, "statements: " + many);
+    }
+
+    @Test
+    @DisplayName("When root companies are listed the statement count does not grow with them")
+    void findAllDistinctIdThenConstantStatements() {
+        this.createCompanyTrees(2);
+        var few = this.countStatements(() -> this.companyService.findAllDistinctId().size());
+        this.createCompanyTrees(10);
+        var many = this.countStatements(() -> this.companyService.findAllDistinctId().size());
+
+        assertEquals(few, many);
+        assertTrue(many <= 3, "statements: " + many);
+    }
+
+    @Test
+    @DisplayName("When one company is found only the requested branch levels are loaded, one statement each")
+    void findByIdThenOneStatementPerLevel() {
+        var root = this.createCompanyTrees(1);
+
+        var shallow = this.countStatements(() -> this.companyService.findById(root.getId()).getCompanyBranches()
+                .size());
+        var twoLevels = this.countStatements(() -> this.companyService.findById(root.getId(),
+                ResponseShape.from(null, "branches:2")).getCompanyBranches().size());
+        var threeLevels = this.countStatements(() -> this.companyService.findById(root.getId(),
+                ResponseShape.from(null, "branches:3")).getCompanyBranches().size());
+
+        // root with its branches; then their branches; then the (empty) branches of those
+        assertEquals(1, shallow);
+        assertEquals(2, twoLevels);
+        assertEquals(3, threeLevels);
+    }
+
+    @Test
+    @DisplayName("When users are listed their addresses and permissions load in constant statements")
+    void findAllUsersThenConstantStatements() {
+        var permission = this.entityManager.persist(new Permission(null, "ADMIN"));
+        this.createUsers(3, permission);
+        var few = this.countStatements(() -> this.userService.findAll().size());
+        this.createUsers(30, permission);
+        var many = this.countStatements(() -> this.userService.findAll().size());
+
+        assertEquals(few, many);
+        assertTrue(many <= 3, "statements: " + many);
+    }
+
+    private long countStatements(Supplier<Integer> read) {
+        this.entityManager.flush();
+        this.entityManager.clear();
+        this.statistics.clear();
+        assertTrue(read.get() > 0);
+        return this.statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Each tree is a company with two branches that have two branches each.
+     */
+    private Company createCompanyTrees(int count) {
+        Company root = null;
+        for (int i = 0; i < count; i++) {
+            root = this.createCompany();
+            for (int j = 0; j < 2; j++) {
+                var branch = this.createCompany();
+                branch.getCompanyBranches().add(this.createCompany());
+                branch.getCompanyBranches().add(this.createCompany());
+                root.getCompanyBranches().add(branch);
+            }
+        }
+        return root;
+    }
+
+    private Company createCompany() {
+        var number = ++this.companies;
+        var address = new Address("Street " + number, "São Paulo", "SP", number);
+        return this.entityManager.persist(new Company(null, "Company " + number, "%014d".formatted(number),
+                address, new HashSet<>(), 0));
+    }
+
+    private void createUsers(int count, Permission permission) {
+        for (int i = 0; i < count; i++) {
+            var number = ++this.users;
+            var user = new User();
+            user.setFullname("User " + number);
+            user.setUsername("user" + number);
+            user.setPassword("password");
+            user.setEnabled(true);
+            user.getAddresses().add(new Address("Street " + number, "São Paulo", "SP", number));
+            user.getPermissions().add(permission);
+            this.entityManager.persist(user);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.service.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoginThrottleServiceTest {
+    private static final String USERNAME = "user";
+    private static final String IP = "10.0.0.1";
+    private static final int USERNAME_PERMITS = 5;
+    private static final int IP_PERMITS = 1000;
+
+    private LoginThrottleService loginThrottleService;
+
+    @BeforeEach
+    void setUp() {
+        this.loginThrottleService = new LoginThrottleService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(loginThrottleService, "maxKeys", 1000L);
+        ReflectionTestUtils.setField(loginThrottleService, "usernamePermits", USERNAME_PERMITS);
+        ReflectionTestUtils.setField(loginThrottleService, "usernamePeriod", Duration.ofHours(1));
+        ReflectionTestUtils.setField(loginThrottleService, "ipPermits", IP_PERMITS);
+        ReflectionTestUtils.setField(loginThrottleService, "ipPeriod", Duration.ofHours(1));
+        this.loginThrottleService.init();
+    }
+
+    @Test
+    @DisplayName("When the username exceeds its permits the login is throttled")
+    void acquireBeyondPermitsThenThrowTooManyRequestsException() {
+        for (int i = 0; i < USERNAME_PERMITS; i++) {
+            assertDoesNotThrow(() -> this.loginThrottleService.acquire(USERNAME, IP));
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> this.loginThrottleService.acquire("USER", IP));
+        assertDoesNotThrow(() -> this.loginThrottleService.acquire("other", IP));
+    }
+
+    @Test
+    @DisplayName("When many threads race on the same username exactly the permits are granted")
+    void acquireUnderContentionThenGrantExactlyPermits() throws Exception {
+        var threads = 16;
+        var attemptsPerThread = 50;
+        var granted = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                var ip = "10.0.1." + t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        try {
+                            this.loginThrottleService.acquire(USERNAME, ip);
+                            granted.incrementAndGet();
+                        } catch (TooManyRequestsException ignored) {
+                            // expected once the bucket is empty
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(USERNAME_PERMITS, granted.get());
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.service.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingServiceTest {
+    private static final String PASSWORD = "123456";
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private PasswordHashingService passwordHashingService;
+
+    @BeforeEach
+    void setUp() {
+        this.passwordHashingService = new PasswordHashingService(passwordEncoder, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(passwordHashingService, "threads", 1);
+        ReflectionTestUtils.setField(passwordHashingService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(passwordHashingService, "timeout", Duration.ofSeconds(5));
+        this.passwordHashingService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.passwordHashingService.shutdown();
+    }
+
+    @Test
+    @DisplayName("When the password is encoded on the hashing pool")
+    void encodeThenReturnBCryptHash() {
+        var hash = this.passwordHashingService.encode(PASSWORD);
+
+        assertTrue(this.passwordEncoder.matches(PASSWORD, hash));
+    }
+
+    @Test
+    @DisplayName("When a password is compared on the hashing pool, an unknown user against a dummy hash")
+    void matchesThenCompareOnPoolAndDummyHashForUnknownUser() {
+        var hash = this.passwordEncoder.encode(PASSWORD);
+
+        assertTrue(this.passwordHashingService.matches(PASSWORD, hash));
+        assertFalse(this.passwordHashingService.matches("wrong", hash));
+        assertFalse(this.passwordHashingService.matches(PASSWORD, null));
+        assertNotNull(ReflectionTestUtils.getField(this.passwordHashingService, "dummyHash"));
+    }
+
+    @Test
+    @DisplayName("When the hashing pool and its queue are full the call is rejected")
+    void executeWithFullQueueThenThrowServiceUnavailableException() throws Exception {
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(1);
+        var running = CompletableFuture.runAsync(() -> this.passwordHashingService.execute(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        started.await();
+        var queued = CompletableFuture.runAsync(() -> this.passwordHashingService.execute(() -> {
+            release.await();
+            return null;
+        }));
+        while (!queuedTaskWaiting()) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(ServiceUnavailableException.class, () -> this.passwordHashingService.encode(PASSWORD));
+
+        release.countDown();
+        running.get();
+        queued.get();
+    }
+
+    private boolean queuedTaskWaiting() {
+        var executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(passwordHashingService, "executor");
+        return executor != null && executor.getQueue().size() == 1;
+    }
+}
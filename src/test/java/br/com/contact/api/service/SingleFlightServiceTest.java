@@ -0,0 +1,136 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightServiceTest {
+
+    private static final int CALLERS = 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    private SingleFlightService singleFlightService;
+
+    @BeforeEach
+    void setUp() {
+        this.singleFlightService = new SingleFlightService();
+        ReflectionTestUtils.setField(this.singleFlightService, "timeout", Duration.ofSeconds(5));
+        this.singleFlightService.bindTo(this.meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("When many callers read the same key at once they share one load")
+    void concurrentReadsThenLoadOnce() throws Exception {
+        var release = new CountDownLatch(1);
+        var loads = new AtomicInteger();
+        var leader = this.executor.submit(() -> this.singleFlightService.load("companies", 1L, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "company";
+        }));
+        this.waitFor("singleflight.loads", 1);
+
+        var followers = new ArrayList<Future<String>>();
+        for (int i = 1; i < CALLERS; i++) {
+            followers.add(this.executor.submit(() -> this.singleFlightService.load("companies", 1L, () -> {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        this.waitFor("singleflight.shared", CALLERS - 1);
+        assertEquals(1.0, this.meterRegistry.get("singleflight.inflight").tag("name", "companies").gauge().value());
+        release.countDown();
+
+        assertEquals("company", leader.get());
+        for (var follower : followers) {
+            assertEquals("company", follower.get());
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0.0, this.meterRegistry.get("singleflight.inflight").tag("name", "companies").gauge().value());
+        assertEquals("again", this.singleFlightService.load("companies", 1L, () -> "again"));
+    }
+
+    @Test
+    @DisplayName("When the shared load fails every waiting caller gets the same exception")
+    void failedLoadThenThrowToEveryCaller() throws Exception {
+        var release = new CountDownLatch(1);
+        var leader = this.executor.submit(() -> this.singleFlightService.load("users", 1L, () -> {
+            await(release);
+            throw new ObjectNotFoundException("Object Not Found! Id: 1 Type User");
+        }));
+        this.waitFor("singleflight.loads", 1);
+        var follower = this.executor.submit(() -> this.singleFlightService.load("users", 1L, () -> "user"));
+        this.waitFor("singleflight.shared", 1);
+        release.countDown();
+
+        var exception = assertThrows(ExecutionException.class, follower::get);
+        assertInstanceOf(ObjectNotFoundException.class, exception.getCause());
+        assertSame(exception.getCause(), assertThrows(ExecutionException.class, leader::get).getCause());
+    }
+
+    @Test
+    @DisplayName("When the shared load takes longer than the timeout the caller loads by itself")
+    void slowLoadThenLoadAfterTimeout() throws Exception {
+        ReflectionTestUtils.setField(this.singleFlightService, "timeout", Duration.ofMillis(50));
+        var release = new CountDownLatch(1);
+        var leader = this.executor.submit(() -> this.singleFlightService.load("companies", 1L, () -> {
+            await(release);
+            return "slow";
+        }));
+        this.waitFor("singleflight.loads", 1);
+
+        assertEquals("fast", this.singleFlightService.load("companies", 1L, () -> "fast"));
+        assertEquals("fresh", this.singleFlightService.load("companies", 2L, () -> "fresh"));
+        release.countDown();
+
+        assertEquals("slow", leader.get());
+        assertEquals(1.0, this.count("singleflight.timeouts"));
+    }
+
+    private void waitFor(String counter, int count) {
+        var waiting = CompletableFuture.runAsync(() -> {
+            while (this.count(counter) < count) {
+                Thread.onSpinWait();
+            }
+        });
+        assertDoesNotThrow(() -> waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    private double count(String counter) {
+        return this.meterRegistry.find(counter).functionCounters().stream()
+                .mapToDouble(FunctionCounter::count).sum();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
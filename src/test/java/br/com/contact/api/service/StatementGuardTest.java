@@ -0,0 +1,234 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.security.PasswordEncoderConfig;
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.config.security.jwt.JwtTokenProvider;
+import br.com.contact.api.config.security.jwt.TokenVersionRegistry;
+import br.com.contact.api.entity.Address;
+import br.com.contact.api.entity.Company;
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.entity.model.request.CompanyRequest;
+import br.com.contact.api.entity.model.request.UserRequest;
+import br.com.contact.api.entity.model.response.AddressResponse;
+import br.com.contact.api.entity.model.response.CompanyResponse;
+import br.com.contact.api.entity.model.response.PermissionResponse;
+import br.com.contact.api.entity.model.security.AccountCredentialsRequest;
+import br.com.contact.api.repository.CompanyBatchRepository;
+import br.com.contact.api.support.StatementCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Upper bounds on the SQL statements issued by every public method of {@link CompanyService},
+ * {@link UserService} and {@link AuthService}. Lists run over several rows, so a query per row breaks the
+ * bound; when a change legitimately needs more statements, raise the bound in the same commit.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({CompanyService.class, CnpjRegistry.class, CompanyHierarchyService.class, CompanyGraphService.class,
+        CompanyCacheInvalidator.class, SingleFlightService.class, CompanyBatchRepository.class, UserService.class,
+        AuthService.class, TokenVersionRegistry.class, PermissionRegistry.class, JwtTokenProvider.class,
+        PasswordEncoderConfig.class, CacheConfig.class, StatementGuardTest.Config.class})
+class StatementGuardTest {
+
+    private static final String PASSWORD = "admin123";
+    private static final int ROWS = 5;
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private CompanyService companyService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+    // Its insert relies on PostgreSQL's ON CONFLICT, which H2 does not support.
+    @MockBean
+    private RefreshTokenRevocationService revocationService;
+
+    private Permission permission;
+    private User user;
+    private Company company;
+    private Company leaf;
+    private int companies;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(this.passwordHashingService.matches(any(), any())).thenAnswer(invocation ->
+                this.passwordEncoder.matches(invocation.getArgument(0), invocation.getArgument(1)));
+        when(this.passwordHashingService.encode(anyString())).thenAnswer(invocation ->
+                this.passwordEncoder.encode(invocation.getArgument(0)));
+
+        this.permission = this.entityManager.persist(new Permission(null, "ADMIN"));
+        for (int i = 1; i <= ROWS; i++) {
+            this.user = this.createUser(i);
+            this.company = this.createCompanyTree();
+        }
+        this.leaf = this.createCompany();
+        this.entityManager.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @DisplayName("When companies are read the statements stay within bounds")
+    void companyReadsThenBounded() {
+        var pageable = PageRequest.of(0, ROWS, Sort.by("name", "id"));
+
+        assertStatements(1, () -> this.companyService.findAll());
+        assertStatements(5, () -> this.companyService.findAllPageable(pageable));
+        assertStatements(4, () -> this.companyService.findAllSlice(pageable));
+        assertStatements(4, () -> this.companyService.findAllByCursor(null, ROWS, false));
+        var next = this.companyService.findAllByCursor(null, ROWS, false).getNext();
+        assertStatements(3, () -> this.companyService.findAllByCursor(next, ROWS, false));
+        assertStatements(3, () -> this.companyService.findAllDistinctId());
+        assertStatements(1, () -> this.companyService.findById(this.company.getId()));
+        var shallow = new ResponseShape(Set.of(), 0);
+        assertStatements(1, () -> this.companyService.findById(this.company.getId(), shallow));
+        assertStatements(1, () -> this.companyService.findAll(shallow));
+        assertStatements(1, () -> this.companyService.findAllDistinctId(shallow));
+    }
+
+    @Test
+    @DisplayName("When companies are written the statements stay within bounds")
+    void companyWritesThenBounded() {
+        var branches = Set.of(new CompanyResponse(this.company.getId(), null, null, null, null));
+        var request = new CompanyRequest("Created", "11222333000181",
+                new AddressResponse("Street", "São Paulo", "SP", 1), branches);
+
+        assertStatements(11, () -> this.companyService.create(request));
+        request.setCnpj("11444777000161");
+        assertStatements(11, () -> this.companyService.update(this.leaf.getId(), request));
+        // With the same branches the hierarchy and the graph are left alone.
+        request.setName("Renamed");
+        assertStatements(3, () -> this.companyService.update(this.leaf.getId(), request));
+        assertStatements(6, () -> this.companyService.delete(this.leaf.getId()));
+    }
+
+    @Test
+    @DisplayName("When users are read the statements stay within bounds")
+    void userReadsThenBounded() {
+        var pageable = PageRequest.of(0, ROWS, Sort.by("fullname", "id"));
+
+        assertStatements(3, () -> this.userService.findAll());
+        assertStatements(4, () -> this.userService.findAllPageable(pageable));
+        assertStatements(3, () -> this.userService.findAllSlice(pageable));
+        assertStatements(3, () -> this.userService.findAllByCursor(null, 2, false));
+        assertStatements(2, () -> this.userService.findById(this.user.getId()));
+        assertStatements(1, () -> this.userService.findById(this.user.getId(), ResponseShape.from("fullname", null)));
+        assertStatements(2, () -> this.userService.findByUsername(this.user.getUsername()));
+        assertStatements(2, () -> this.userService.loadUserByUsername(this.user.getUsername()));
+    }
+
+    @Test
+    @DisplayName("When users are written the statements stay within bounds")
+    void userWritesThenBounded() {
+        var request = new UserRequest("Created", "created", PASSWORD, true, true, true, true,
+                Set.of(new PermissionResponse(this.permission.getId(), this.permission.getDescription())),
+                Set.of(new AddressResponse("Street", "São Paulo", "SP", 1)), null);
+
+        assertStatements(3, () -> this.userService.create(request));
+        assertStatements(3, () -> this.userService.updatePassword(this.user, "hash"));
+        request.setUsername("updated");
+        assertStatements(5, () -> this.userService.update(this.user.getId(), request));
+        assertStatements(4, () -> this.userService.delete(this.user.getId()));
+    }
+
+    @Test
+    @DisplayName("When tokens are issued the statements stay within bounds")
+    void authThenBounded() {
+        var username = this.user.getUsername();
+        var refreshToken = this.tokenProvider.createAccessToken(username, this.user.getRoles()).getRefreshToken();
+
+        assertStatements(3, () -> this.authService.login(new AccountCredentialsRequest(username, PASSWORD)));
+        assertStatements(2, () -> this.authService.refreshToken(username, refreshToken));
+    }
+
+    private void assertStatements(int max, Runnable operation) {
+        this.entityManager.flush();
+        this.entityManager.clear();
+        StatementCounter.assertAtMost(max, () -> {
+            operation.run();
+            this.entityManager.flush();
+        });
+    }
+
+    private User createUser(int number) {
+        var user = new User();
+        user.setFullname("User " + number);
+        user.setUsername("user" + number);
+        user.setPassword(this.passwordEncoder.encode(PASSWORD));
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setEnabled(true);
+        user.getAddresses().add(new Address("Street " + number, "São Paulo", "SP", number));
+        user.getPermissions().add(this.permission);
+        return this.entityManager.persist(user);
+    }
+
+    /**
+     * A company with two branches that have one branch each.
+     */
+    private Company createCompanyTree() {
+        var root = this.createCompany();
+        for (int i = 0; i < 2; i++) {
+            var branch = this.createCompany();
+            branch.getCompanyBranches().add(this.createCompany());
+            root.getCompanyBranches().add(branch);
+        }
+        return root;
+    }
+
+    private Company createCompany() {
+        var number = ++this.companies;
+        return this.entityManager.persist(new Company(null, "Company " + number, "%014d".formatted(number),
+                new Address("Street " + number, "São Paulo", "SP", number), new HashSet<>(), 0));
+    }
+}
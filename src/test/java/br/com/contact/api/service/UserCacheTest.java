@@ -0,0 +1,78 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.config.security.jwt.TokenVersionRegistry;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.support.StatementCounter;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({UserService.class, TokenVersionRegistry.class, PermissionRegistry.class, SingleFlightService.class, CacheConfig.class})
+class UserCacheTest {
+
+    private static final String USERNAME = "cached";
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private CacheManager cacheManager;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+
+    private Cache<Object, Object> cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        this.cache = (Cache<Object, Object>) this.cacheManager.getCache(CacheConfig.USERS).getNativeCache();
+        this.cache.invalidateAll();
+        var user = new User();
+        user.setFullname("Cached User");
+        user.setUsername(USERNAME);
+        user.setPassword("password");
+        user.setEnabled(true);
+        this.entityManager.persist(user);
+        this.entityManager.flush();
+        this.entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("When a user is loaded twice the first read goes through the cache loader and the second hits")
+    void loadUserByUsernameTwiceThenLoadOnceAndHit() {
+        var loads = this.cache.stats().loadCount();
+        var first = this.userService.loadUserByUsername(USERNAME);
+
+        StatementCounter.assertAtMost(0, () -> assertSame(first, this.userService.loadUserByUsername(USERNAME)));
+        var stats = this.cache.stats();
+        assertEquals(loads + 1, stats.loadCount());
+        assertTrue(stats.totalLoadTime() > 0);
+        assertTrue(stats.hitCount() >= 1);
+    }
+
+    @Test
+    @DisplayName("When an unknown user is loaded then the not found exception reaches the caller uncached")
+    void loadUnknownUserThenThrowAndCacheNothing() {
+        var failures = this.cache.stats().loadFailureCount();
+        assertThrows(UsernameNotFoundException.class, () -> this.userService.loadUserByUsername("unknown"));
+
+        assertNull(this.cache.getIfPresent("unknown"));
+        assertEquals(failures + 1, this.cache.stats().loadFailureCount());
+    }
+}
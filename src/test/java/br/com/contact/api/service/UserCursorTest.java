@@ -0,0 +1,127 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.config.security.jwt.TokenVersionRegistry;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.entity.model.response.UserResponse;
+import br.com.contact.api.repository.UserRepository;
+import br.com.contact.api.support.StatementCounter;
+import br.com.contact.api.util.KeysetCursor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Keyset pages must visit every user exactly once, including users without a fullname.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({UserService.class, TokenVersionRegistry.class, PermissionRegistry.class, SingleFlightService.class, CacheConfig.class})
+class UserCursorTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+
+    private int users;
+
+    @Test
+    @DisplayName("When users without a fullname are paged ascending then they come last and none is skipped")
+    void findAllByCursorAscWithNullFullnamesThenEveryUserOnce() {
+        this.createUsers();
+
+        var ids = this.pageIds(false);
+
+        assertEquals(this.userRepository.count(), ids.size());
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+        var fullnames = this.fullnames(ids);
+        var firstNull = fullnames.indexOf(null);
+        assertEquals(3, fullnames.size() - firstNull);
+        fullnames.subList(firstNull, fullnames.size()).forEach(fullname -> assertNull(fullname));
+    }
+
+    @Test
+    @DisplayName("When users without a fullname are paged descending then they come first and none is skipped")
+    void findAllByCursorDescWithNullFullnamesThenEveryUserOnce() {
+        this.createUsers();
+
+        var ids = this.pageIds(true);
+
+        assertEquals(this.userRepository.count(), ids.size());
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+        var fullnames = this.fullnames(ids);
+        fullnames.subList(0, 3).forEach(fullname -> assertNull(fullname));
+        assertEquals(3, fullnames.stream().filter(fullname -> fullname == null).count());
+    }
+
+    @Test
+    @DisplayName("When pages are read each statement is a single seek, without an OR across the fullname groups")
+    void findAllByCursorThenNoDisjunctions() {
+        this.createUsers();
+
+        var statements = StatementCounter.capture(() -> {
+            this.pageIds(false);
+            this.pageIds(true);
+        });
+
+        assertFalse(statements.isEmpty());
+        statements.forEach(sql -> assertFalse(sql.toLowerCase().contains(" or "), sql));
+    }
+
+    @Test
+    @DisplayName("When a cursor has no key then it decodes back to a null key rather than the text null")
+    void encodeNullKeyThenDecodesNull() {
+        var cursor = KeysetCursor.decode(new KeysetCursor(null, 7, true).encode());
+
+        assertNull(cursor.key());
+        assertEquals(7, cursor.id());
+        assertEquals("null", KeysetCursor.decode(new KeysetCursor("null", 7, false).encode()).key());
+    }
+
+    private List<Long> pageIds(boolean descending) {
+        var ids = new ArrayList<Long>();
+        String cursor = null;
+        do {
+            var page = this.userService.findAllByCursor(cursor, 2, descending);
+            page.getContent().stream().map(UserResponse::getId).forEach(ids::add);
+            cursor = page.getNext();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private List<String> fullnames(List<Long> ids) {
+        return ids.stream().map(id -> this.entityManager.find(User.class, id).getFullname()).toList();
+    }
+
+    private void createUsers() {
+        for (var fullname : new String[]{"Ana", null, "Bruno", null, "Ana", null, "Carla"}) {
+            var number = ++this.users;
+            var user = new User();
+            user.setFullname(fullname);
+            user.setUsername("cursor" + number);
+            user.setPassword("password");
+            user.setEnabled(true);
+            this.entityManager.persist(user);
+        }
+        this.entityManager.flush();
+    }
+}
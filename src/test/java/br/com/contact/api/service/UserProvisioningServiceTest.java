@@ -0,0 +1,170 @@
+package br.com.contact.api.service;
+
+import br.com.contact.api.config.CacheConfig;
+import br.com.contact.api.config.security.PasswordEncoderConfig;
+import br.com.contact.api.entity.Permission;
+import br.com.contact.api.entity.User;
+import br.com.contact.api.entity.model.response.ImportErrorResponse;
+import br.com.contact.api.repository.UserBatchRepository;
+import br.com.contact.api.service.exceptions.BadRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "security.password.provisioning.chunkSize=4")
+@Import({UserProvisioningService.class, UserBatchRepository.class, PasswordEncoderConfig.class, CacheConfig.class,
+        JacksonAutoConfiguration.class, ValidationAutoConfiguration.class, UserProvisioningServiceTest.Config.class})
+class UserProvisioningServiceTest {
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private UserProvisioningService userProvisioningService;
+
+    private Permission permission;
+
+    @BeforeEach
+    void setUp() {
+        this.permission = this.entityManager.persist(new Permission(null, "ADMIN"));
+        var user = new User();
+        user.setFullname("Existing");
+        user.setUsername("existing");
+        user.setPassword("hash");
+        this.entityManager.persist(user);
+        this.entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("When users are provisioned the valid rows are written with hashed passwords and links")
+    void provisionThenWriteValidRowsAndReportOthers() throws Exception {
+        var json = """
+                [
+                  {"fullname": "Ana", "username": "ana", "password": "secret", "enabled": true,
+                   "permissions": [{"id": %d}],
+                   "addresses": [{"street": "Street 1", "city": "Santos", "state": "SP", "zip": 1},
+                                 {"street": "Street 2", "city": "Santos", "state": "SP", "zip": 2}],
+                   "contactInfo": {"homePhone": {"phoneNumber": "5511999999999", "phoneType": "mobile"}}},
+                  {"fullname": "No password", "username": "nopassword"},
+                  {"fullname": "Repeated", "username": "ana", "password": "secret"},
+                  {"fullname": "Registered", "username": "existing", "password": "secret"},
+                  {"fullname": "Unknown permission", "username": "unknown", "password": "secret",
+                   "permissions": [{"id": 999}]},
+                  {"fullname": "Bruno", "username": "bruno", "password": "secret", "enabled": "maybe"},
+                  {"fullname": "Carla", "username": "carla", "password": "secret"}
+                ]
+                """.formatted(this.permission.getId());
+
+        var response = this.userProvisioningService.provision(body(json));
+
+        assertEquals(2, response.getImported());
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L), response.getErrors().stream().map(ImportErrorResponse::getRow)
+                .toList());
+        assertEquals("The password is required.", response.getErrors().get(0).getMessage());
+        assertEquals("Username already exist.", response.getErrors().get(1).getMessage());
+        assertEquals("Username already exist.", response.getErrors().get(2).getMessage());
+        assertEquals("Permission not found: [999]", response.getErrors().get(3).getMessage());
+        assertEquals("Malformed row.", response.getErrors().get(4).getMessage());
+
+        var id = this.jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'ana'", Long.class);
+        var password = this.jdbcTemplate.queryForObject("SELECT password FROM users WHERE id = ?", String.class, id);
+        assertTrue(this.passwordEncoder.matches("secret", password));
+        assertEquals("mobile", this.jdbcTemplate.queryForObject("SELECT phone_type FROM users WHERE id = ?",
+                String.class, id));
+        assertEquals(2, this.jdbcTemplate.queryForObject("SELECT count(*) FROM user_addresses WHERE user_id = ?",
+                Integer.class, id));
+        assertEquals(List.of(this.permission.getId()), this.jdbcTemplate.queryForList(
+                "SELECT permission_id FROM user_permissions WHERE user_id = ?", Long.class, id));
+    }
+
+    @Test
+    @DisplayName("When more users than one chunk are provisioned every chunk is written and counted")
+    void provisionManyUsersThenWriteAllChunks() throws Exception {
+        var json = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            json.append("{\"fullname\": \"User %d\", \"username\": \"user%d\", \"password\": \"secret\"}\n"
+                    .formatted(i, i));
+        }
+
+        var response = this.userProvisioningService.provision(body(json.toString()));
+
+        assertEquals(10, response.getImported());
+        assertTrue(response.getErrors().isEmpty());
+        assertEquals(11, this.jdbcTemplate.queryForObject("SELECT count(*) FROM users", Integer.class));
+        assertEquals(10.0, this.meterRegistry.counter("users.provisioned").count());
+    }
+
+    @Test
+    @DisplayName("When the database refuses a chunk its rows are reported and the other chunks are written")
+    void provisionChunkRejectedByDatabaseThenReportRowsAndContinue() throws Exception {
+        var json = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            // Longer than the fullname column, which the request does not validate.
+            var fullname = i == 5 ? "x".repeat(300) : "User " + i;
+            json.append("{\"fullname\": \"%s\", \"username\": \"user%d\", \"password\": \"secret\"}\n"
+                    .formatted(fullname, i));
+        }
+        var provisioned = this.meterRegistry.counter("users.provisioned").count();
+
+        var response = this.userProvisioningService.provision(body(json.toString()));
+
+        assertEquals(6, response.getImported());
+        assertEquals(List.of(5L, 6L, 7L, 8L), response.getErrors().stream().map(ImportErrorResponse::getRow).toList());
+        assertEquals("user4", response.getErrors().get(0).getKey());
+        assertEquals(provisioned + 6, this.meterRegistry.counter("users.provisioned").count());
+        // The chunk's own rollback is not visible here, as the test transaction encloses it.
+        assertEquals(6, this.jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM users WHERE username IN ('user0', 'user1', 'user2', 'user3', 'user8', 'user9')",
+                Integer.class));
+    }
+
+    @Test
+    @DisplayName("When the body is not JSON the provisioning is rejected")
+    void provisionMalformedBodyThenThrowBadRequest() {
+        var exception = assertThrows(BadRequestException.class,
+                () -> this.userProvisioningService.provision(body("{\"fullname\": ")));
+
+        assertEquals("Malformed import body.", exception.getMessage());
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
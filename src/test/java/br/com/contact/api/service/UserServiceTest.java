@@ -1,24 +1,36 @@
 package br.com.contact.api.service;
 
+import br.com.contact.api.config.security.PermissionRegistry;
+import br.com.contact.api.config.security.jwt.TokenVersionRegistry;
 import br.com.contact.api.entity.*;
 import br.com.contact.api.entity.model.request.UserRequest;
 import br.com.contact.api.entity.model.response.*;
+import br.com.contact.api.entity.model.security.UserSnapshot;
+import br.com.contact.api.repository.PermissionRepository;
 import br.com.contact.api.repository.UserRepository;
 import br.com.contact.api.service.exceptions.ObjectNotFoundException;
+import br.com.contact.api.service.exceptions.PreconditionFailedException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
@@ -58,6 +70,14 @@ class UserServiceTest {
     private UserService userService;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private TokenVersionRegistry tokenVersions;
+    @Mock
+    private PasswordHashingService passwordHashingService;
+    @Mock
+    private SingleFlightService singleFlightService;
+    @Mock
+    private PermissionRepository permissionRepository;
 
     private UserRequest userRequest;
     private User user;
@@ -67,8 +87,14 @@ class UserServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(this.singleFlightService.load(anyString(), any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(2).get());
         this.startUser();
         this.startUserRequest();
+        when(this.permissionRepository.findAll(any(Sort.class))).thenReturn(List.copyOf(user.getPermissions()));
+        var permissionRegistry = new PermissionRegistry(this.permissionRepository);
+        ReflectionTestUtils.invokeMethod(permissionRegistry, "init");
+        ReflectionTestUtils.setField(this.userService, "permissionRegistry", permissionRegistry);
     }
 
     @Test
@@ -84,6 +110,19 @@ class UserServiceTest {
         assertEquals(USER_ID, response.get(0).getId());
     }
 
+    @Test
+    @DisplayName("When the last cursor page is returned descending there is no next cursor")
+    void findAllByCursorDescendingThenReturnLastPage() {
+        when(this.userRepository.findFirstOrderByFullnameDesc(13)).thenReturn(List.of(user));
+
+        var response = this.userService.findAllByCursor(null, 12, true);
+
+        assertEquals(1, response.getContent().size());
+        assertEquals(USER_ID, response.getContent().get(0).getId());
+        assertNull(response.getNext());
+        verify(this.userRepository, never()).count();
+    }
+
     @Test
     @DisplayName("When the search for id is returned successfully")
     void findByIdUserSuccess() {
@@ -118,6 +157,17 @@ class UserServiceTest {
         }
     }
 
+    @Test
+    @DisplayName("When a user is loaded twice both snapshots share the registry's authority instances")
+    void loadUserByUsernameThenShareAuthorities() {
+        when(this.userRepository.findByUsername(anyString())).thenReturn(optionalUser);
+
+        var first = this.userService.loadUserByUsername(USERNAME);
+        var second = this.userService.loadUserByUsername(USERNAME);
+
+        assertSame(first.getAuthorities().get(0), second.getAuthorities().get(0));
+    }
+
     @Test
     @DisplayName("When the search for username is returned successfully")
     void findByUsernameReturnSuccess() {
@@ -161,7 +211,8 @@ class UserServiceTest {
 
         assertNotNull(response);
         assertNotNull(response.getAuthorities());
-        assertEquals(User.class, response.getClass());
+        assertEquals(UserSnapshot.class, response.getClass());
+        assertEquals(DESCRIPTION, response.getAuthorities().iterator().next().getAuthority());
         assertEquals(USERNAME, response.getUsername());
         assertEquals(PASSWORD, response.getPassword());
     }
@@ -179,6 +230,14 @@ class UserServiceTest {
         }
     }
 
+    @Test
+    @DisplayName("When the username is unknown the authentication manager gets UsernameNotFoundException")
+    void loadUserByUsernameUnknownThenThrowUsernameNotFoundException() {
+        when(this.userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> this.userService.loadUserByUsername(USERNAME));
+    }
+
     @Test
     @DisplayName("When the user is created successfully")
     void createUserSuccess() {
@@ -205,7 +264,7 @@ class UserServiceTest {
     void updateUserSuccess() {
         when(this.userRepository.findById(anyLong())).thenReturn(optionalUser);
 
-        when(this.userRepository.save(any(User.class))).thenReturn(user);
+        when(this.userRepository.saveAndFlush(any(User.class))).thenReturn(user);
 
         UserResponse response = this.userService.update(USER_ID, userRequest);
 
@@ -221,9 +280,30 @@ class UserServiceTest {
         assertEquals(ACCOUNT_NON_LOCKED, response.getAccountNonLocked());
         assertEquals(CREDENTIALS_NON_EXPIRED, response.getCredentialsNonExpired());
         assertEquals(ENABLED, response.getEnabled());
+        verify(this.tokenVersions, times(1)).revoke(user);
+    }
+
+    @Test
+    @DisplayName("When the user changed since the version in If-Match the update fails its precondition")
+    void updateUserWithOtherVersionThenReturnPreconditionFailed() {
+        user.setVersion(2);
+        when(this.userRepository.findById(anyLong())).thenReturn(optionalUser);
+
+        assertThrows(PreconditionFailedException.class,
+                () -> this.userService.update(USER_ID, userRequest, List.of(1L)));
+
+        verify(this.userRepository, never()).save(any());
+        verifyNoInteractions(this.tokenVersions);
     }
 
+    @Test
+    @DisplayName("When the version of a user is probed")
+    void findVersionThenReturnVersion() {
+        when(this.userRepository.findVersionById(USER_ID)).thenReturn(Optional.of(3L));
 
+        assertEquals(3L, this.userService.findVersion(USER_ID));
+        assertThrows(ObjectNotFoundException.class, () -> this.userService.findVersion(2L));
+    }
 
     @Test
     @DisplayName("When the user is deleted successfully")
@@ -232,6 +312,7 @@ class UserServiceTest {
         doNothing().when(this.userRepository).deleteById(anyLong());
         this.userService.delete(USER_ID);
         verify(this.userRepository, times(1)).deleteById(anyLong());
+        verify(this.tokenVersions, times(1)).evict(USERNAME);
     }
 
     @Test
@@ -269,7 +350,7 @@ class UserServiceTest {
         user.setEnabled(ENABLED);
         user.getAddresses().add(address);
         user.setContactInfo(contactInfo);
-        user.setPermissions(Set.of(permission));
+        user.getPermissions().add(permission);
 
         optionalUser = Optional.of(user);
     }
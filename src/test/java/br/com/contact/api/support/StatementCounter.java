@@ -0,0 +1,50 @@
+package br.com.contact.api.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Hibernate {@link StatementInspector} that records the SQL issued by the current thread while a block runs,
+ * so tests can put an upper bound on the statements an operation needs. It is registered for the test profile
+ * through {@code hibernate.session_factory.statement_inspector}.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        var captured = CAPTURED.get();
+        if (captured != null) {
+            captured.add(sql);
+        }
+        return sql;
+    }
+
+    public static List<String> capture(Runnable block) {
+        var previous = CAPTURED.get();
+        var captured = new ArrayList<String>();
+        CAPTURED.set(captured);
+        try {
+            block.run();
+        } finally {
+            CAPTURED.set(previous);
+        }
+        return captured;
+    }
+
+    /**
+     * Fails listing every statement when the block issues more than {@code max} of them.
+     */
+    public static void assertAtMost(int max, Runnable block) {
+        var statements = capture(block);
+        if (statements.size() > max) {
+            fail("Expected at most %d statements but %d were issued:%n%s"
+                    .formatted(max, statements.size(), String.join(System.lineSeparator(), statements)));
+        }
+    }
+}
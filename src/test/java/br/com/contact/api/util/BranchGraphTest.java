@@ -0,0 +1,117 @@
+package br.com.contact.api.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BranchGraphTest {
+
+    @Test
+    @DisplayName("When the graph is a tree the subtree, ancestors, roots and depth follow the links")
+    void treeThenAnswerHierarchyQueries() {
+        // 1 -> 2 -> 4, 1 -> 3, 5 alone, and a link to an unknown company that is dropped.
+        var graph = BranchGraph.builder()
+                .addCompany(1).addCompany(2).addCompany(3).addCompany(4).addCompany(5)
+                .addLink(1, 2).addLink(1, 3).addLink(2, 4).addLink(2, 4).addLink(4, 99)
+                .build();
+
+        assertEquals(5, graph.size());
+        assertEquals(3, graph.links());
+        assertArrayEquals(new long[]{2, 3, 4}, graph.descendants(1));
+        assertArrayEquals(new long[]{2, 1}, graph.ancestors(4));
+        assertEquals(3, graph.subtreeSize(1));
+        assertEquals(2, graph.depth(4));
+        assertEquals(0, graph.depth(5));
+        assertEquals(-1, graph.depth(99));
+        assertArrayEquals(new long[0], graph.descendants(99));
+        assertArrayEquals(new long[]{1, 5}, graph.roots());
+        assertTrue(graph.reaches(1, 4));
+        assertFalse(graph.reaches(4, 1));
+        assertFalse(graph.reaches(1, 99));
+        assertFalse(graph.hasCycle());
+    }
+
+    @Test
+    @DisplayName("When the links form a cycle the walks stop and the cycle is reported")
+    void cycleThenStopAndReport() {
+        var graph = BranchGraph.builder()
+                .addCompany(1).addCompany(2).addCompany(3)
+                .addLink(1, 2).addLink(2, 3).addLink(3, 2)
+                .build();
+
+        assertArrayEquals(new long[]{2, 3}, graph.descendants(1));
+        assertArrayEquals(new long[]{1, 3}, graph.ancestors(2));
+        assertEquals(2, graph.depth(3));
+        assertTrue(graph.reaches(3, 2));
+        assertTrue(graph.hasCycle());
+        assertFalse(graph.apply(BranchGraph.patch().setBranches(3)).hasCycle());
+    }
+
+    @Test
+    @DisplayName("When the graph is changed a new one is returned and the old one is untouched")
+    void changeThenKeepOriginal() {
+        var graph = BranchGraph.builder().addCompany(1).addCompany(2).addLink(1, 2).build();
+
+        var moved = graph.apply(BranchGraph.patch().setBranches(3, 1));
+        var removed = moved.apply(BranchGraph.patch().remove(1));
+
+        assertArrayEquals(new long[]{1, 2}, moved.descendants(3));
+        assertEquals(0, removed.depth(2));
+        assertEquals(0, removed.links());
+        assertArrayEquals(new long[]{2}, graph.descendants(1));
+        assertFalse(graph.contains(3));
+        assertArrayEquals(new long[0], moved.apply(BranchGraph.patch().setBranches(1)).branchesOf(1));
+    }
+
+    @Test
+    @DisplayName("When a patch holds several changes the result is the graph built with them")
+    void patchThenMatchBuiltGraph() {
+        // 1 -> 2 -> 3, 1 -> 4 -> 5
+        var graph = BranchGraph.builder()
+                .addCompany(1).addCompany(2).addCompany(3).addCompany(4).addCompany(5)
+                .addLink(1, 2).addLink(2, 3).addLink(1, 4).addLink(4, 5)
+                .build();
+
+        var patched = graph.apply(BranchGraph.patch()
+                .remove(4)
+                .setBranches(6, 5, 3, 3, 99)
+                .setBranches(2)
+                .setBranches(0, 1, 4));
+
+        assertEquals(6, patched.size());
+        assertFalse(patched.contains(4));
+        assertArrayEquals(new long[]{1}, patched.branchesOf(0));
+        assertArrayEquals(new long[]{2}, patched.branchesOf(1));
+        assertArrayEquals(new long[0], patched.branchesOf(2));
+        assertArrayEquals(new long[]{3, 5}, patched.branchesOf(6));
+        assertArrayEquals(new long[]{6}, patched.ancestors(5));
+        assertArrayEquals(new long[]{0, 6}, patched.roots());
+        assertEquals(4, patched.links());
+        assertSame(graph, graph.apply(BranchGraph.patch()));
+    }
+
+    @Test
+    @DisplayName("When the hierarchy is deep and wide the walks visit every company once")
+    void largeGraphThenVisitEveryCompany() {
+        var builder = BranchGraph.builder();
+        var companies = 100_000;
+        for (long id = 1; id <= companies; id++) {
+            builder.addCompany(id);
+            if (id > 1) {
+                // A chain down the first thousand companies, then a wide fan out under them.
+                builder.addLink(id <= 1000 ? id - 1 : id % 1000 + 1, id);
+            }
+        }
+        var graph = builder.build();
+
+        assertEquals(companies - 1, graph.subtreeSize(1));
+        assertEquals(999, graph.ancestors(1000).length);
+        assertEquals(1000, graph.depth(1999));
+        assertArrayEquals(new long[]{1}, graph.roots());
+        assertTrue(graph.reaches(1, companies));
+        assertFalse(graph.hasCycle());
+        assertTrue(graph.apply(BranchGraph.patch().setBranches(companies, 1)).hasCycle());
+        assertEquals(-1, graph.apply(BranchGraph.patch().setBranches(companies, 1)).depth(companies));
+    }
+}